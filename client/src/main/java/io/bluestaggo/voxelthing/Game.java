@@ -1,9 +1,12 @@
 package io.bluestaggo.voxelthing;
 
+import io.bluestaggo.pds.CompoundItem;
 import io.bluestaggo.voxelthing.assets.Texture;
 import io.bluestaggo.voxelthing.gui.*;
 import io.bluestaggo.voxelthing.renderer.MainRenderer;
 import io.bluestaggo.voxelthing.renderer.draw.Quad;
+import io.bluestaggo.voxelthing.renderer.world.BlockRenderer;
+import io.bluestaggo.voxelthing.renderer.world.MeshingMode;
 import io.bluestaggo.voxelthing.window.ClientPlayerController;
 import io.bluestaggo.voxelthing.window.Window;
 import io.bluestaggo.voxelthing.world.BlockRaycast;
@@ -12,12 +15,17 @@ import io.bluestaggo.voxelthing.world.World;
 import io.bluestaggo.voxelthing.world.block.Block;
 import io.bluestaggo.voxelthing.world.entity.IPlayerController;
 import io.bluestaggo.voxelthing.world.entity.Player;
-import io.bluestaggo.voxelthing.world.generation.GenerationInfo;
+import io.bluestaggo.voxelthing.world.storage.WorldSave;
 
 import javax.swing.*;
 import java.io.*;
+import java.nio.file.Files;
+import java.nio.file.Path;
 import java.text.SimpleDateFormat;
+import java.util.Comparator;
 import java.util.Date;
+import java.util.Random;
+import java.util.stream.Stream;
 
 import static org.lwjgl.glfw.GLFW.*;
 import static org.lwjgl.opengl.GL11C.glClearColor;
@@ -26,6 +34,7 @@ import static org.lwjgl.opengl.GL33C.glClearColor;
 public class Game {
 	public static final String VERSION;
 	public static final int TICKS_PER_SECOND = 20;
+	public static final Path SAVES_DIRECTORY = Path.of("saves");
 	public static final float TICK_RATE = 1.0f / TICKS_PER_SECOND;
 
 	static {
@@ -127,12 +136,79 @@ public class Game {
 		window.destroy();
 	}
 
+	// Every new world gets its own save directory, named after when it was created
 	public void startWorld(int type) {
+		Path directory = SAVES_DIRECTORY.resolve(new SimpleDateFormat("yyyy-MM-dd_HH.mm.ss").format(new Date()));
+		WorldSave save = null;
+		try {
+			save = new WorldSave(directory);
+		} catch (IOException e) {
+			System.err.println("Failed to create save directory \"" + directory + "\", the world will not be saved");
+			e.printStackTrace();
+		}
+
+		startWorld(type, new Random().nextLong(), save);
+		world.saveLevel();
+	}
+
+	// Reopens the most recently played save, returning false if there is none that can be read
+	public boolean loadLatestWorld() {
+		Path directory = findLatestSave();
+		if (directory == null) {
+			return false;
+		}
+
+		WorldSave save;
+		try {
+			save = new WorldSave(directory);
+		} catch (IOException e) {
+			System.err.println("Failed to open save directory \"" + directory + "\"");
+			e.printStackTrace();
+			return false;
+		}
+
+		int type;
+		long seed;
+		try {
+			CompoundItem level = save.readLevel();
+			type = level.map.get("type").getInt();
+			seed = level.map.get("seed").getLong();
+		} catch (IOException | RuntimeException e) {
+			System.err.println("Failed to read level from \"" + directory + "\"");
+			e.printStackTrace();
+			try {
+				save.close();
+			} catch (IOException closeError) {
+				closeError.printStackTrace();
+			}
+			return false;
+		}
+
+		startWorld(type, seed, save);
+		return true;
+	}
+
+	private static Path findLatestSave() {
+		if (!Files.isDirectory(SAVES_DIRECTORY)) {
+			return null;
+		}
+
+		try (Stream<Path> saves = Files.list(SAVES_DIRECTORY)) {
+			return saves.filter(WorldSave::exists)
+					.max(Comparator.comparing(directory -> directory.resolve(WorldSave.LEVEL_FILE).toFile().lastModified()))
+					.orElse(null);
+		} catch (IOException e) {
+			e.printStackTrace();
+			return null;
+		}
+	}
+
+	private void startWorld(int type, long seed, WorldSave save) {
 		if (world != null) {
 			world.close();
 		}
 
-		world = new ClientWorld(this, type);
+		world = new ClientWorld(this, type, seed, save);
 		playerController = new ClientPlayerController(this);
 		player = new Player(world, playerController);
 	}
@@ -155,6 +231,10 @@ public class Game {
 		}
 
 		if (isInWorld()) {
+			world.playerX = player.posX;
+			world.playerY = player.posY;
+			world.playerZ = player.posZ;
+			world.update();
 			player.onGameUpdate();
 			player.noClip = window.isKeyDown(GLFW_KEY_Q);
 			
@@ -169,13 +249,6 @@ public class Game {
 			if (isInWorld()) {
 				inGameGui.tick();
 				player.tick();
-				/* 
-				GenerationInfo genInfo = world.genCache.getGenerationAt((int)player.posX, (int)player.posZ);
-				int vx = (int)((Math.round(player.posX/genInfo.gridDist) * 50));
-				int vz = (int)((Math.round(player.posZ/genInfo.gridDist) * 50));
-				System.out.println(vx + "   a    " + vz);
-				genInfo.voronoiSeedsGen(vx,vz);
-				*/
 			}  
 		}
 
@@ -267,6 +340,14 @@ public class Game {
 		if (window.isKeyJustPressed(GLFW_KEY_F6)) {
 			if (++currentSkin >= SKINS.length) currentSkin = 0;
 		}
+
+		if (window.isKeyJustPressed(GLFW_KEY_F7)) {
+			BlockRenderer blockRenderer = renderer.blockRenderer;
+			blockRenderer.meshingMode = blockRenderer.meshingMode == MeshingMode.GREEDY
+					? MeshingMode.PER_FACE
+					: MeshingMode.GREEDY;
+			renderer.worldRenderer.markAllForUpdate();
+		}
 		boolean a = false;
 		if (window.isKeyJustPressed(GLFW_KEY_ESCAPE)) {
 
@@ -3,6 +3,8 @@ package io.bluestaggo.voxelthing.gui;
 import io.bluestaggo.voxelthing.Game;
 import io.bluestaggo.voxelthing.assets.FontManager;
 import io.bluestaggo.voxelthing.renderer.screen.Screen;
+import io.bluestaggo.voxelthing.world.generation.BiomePoints;
+import io.bluestaggo.voxelthing.world.generation.GenCache;
 
 public class DebugGui extends GuiScreen {
 	public DebugGui(Game game) {
@@ -26,12 +28,21 @@ public class DebugGui extends GuiScreen {
 				"FPS", game.window.getFps() + " (" + (int)(game.window.getDeltaTime() * 1000.0D) + "ms)",
 				"Memory", (totalMB - freeMB) + " / " + maxMB + " MB",
 				"Render Distance", String.valueOf(game.renderer.worldRenderer.renderDistance),
+				"Chunk Meshing", game.renderer.blockRenderer.meshingMode
+						+ " (" + game.renderer.worldRenderer.getVertexCount() + " vertices)",
+				"Gen Cache", game.isInWorld()
+						? game.world.genCache.size() + " columns, " + game.world.genCache.getHits()
+						+ " hits / " + game.world.genCache.getMisses() + " misses"
+						: "N/A",
 				"GUI Scale", String.valueOf(screen.scale <= 0.0f ? "auto" : screen.scale),
 				"Position", game.isInWorld()
 						? formatDouble(game.player.posX)
 						+ ", " + formatDouble(game.player.posY)
 						+ ", " + formatDouble(game.player.posZ)
 						: "N/A",
+				"Biome Cell", game.isInWorld()
+						? formatCell(game.world.biomePoints.getNearestCell(game.player.posX, game.player.posZ))
+						: "N/A",
 				"Looking At", game.getBlockRaycast().getDebugText(game.world)
 		};
 
@@ -54,6 +65,10 @@ public class DebugGui extends GuiScreen {
 		fonts.shadowed.print(debugBuilder.toString(), 5, 15);
 	}
 
+	private static String formatCell(long cell) {
+		return GenCache.columnX(cell) + ", " + GenCache.columnZ(cell);
+	}
+
 	private static double formatDouble(double d) {
 		return Math.floor(d * 100.0) / 100.0;
 	}
@@ -60,6 +60,9 @@ public class SaveSelect extends GuiScreen {
 			game.startWorld(1);
 			game.openGui(null);
 		}
+		if (control == playWorldButton && game.loadLatestWorld()) {
+			game.openGui(null);
+		}
 		if (control == newChaosWorldButton) {
 			game.startWorld(3);
 			game.openGui(null);
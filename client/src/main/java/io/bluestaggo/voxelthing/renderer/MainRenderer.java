@@ -29,6 +29,7 @@ public class MainRenderer {
 	public final FontManager fonts;
 
 	public final WorldShader worldShader;
+	public final ChunkShader chunkShader;
 	public final SkyShader skyShader;
 	public final ScreenShader screenShader;
 
@@ -57,12 +58,13 @@ public class MainRenderer {
 			fonts = new FontManager(this);
 
 			worldShader = new WorldShader();
+			chunkShader = new ChunkShader();
 			skyShader = new SkyShader();
 			screenShader = new ScreenShader();
 
 			draw3D = new Draw3D(this);
-			worldRenderer = new WorldRenderer(this);
 			blockRenderer = new BlockRenderer();
+			worldRenderer = new WorldRenderer(this);
 			entityRenderer = new EntityRenderer(this);
 
 			draw2D = new Draw2D(this);
@@ -117,6 +119,7 @@ public class MainRenderer {
 			worldRenderer.drawSky();
 
 			setupWorldShader(viewProj);
+			setupChunkShader(viewProj);
 			textures.getMipmappedTexture("/assets/blocks.png").use();
 			useSkyTexture(1);
 			worldRenderer.draw();
@@ -148,6 +151,12 @@ public class MainRenderer {
 		setupFogShader(worldShader);
 	}
 
+	private void setupChunkShader(Matrix4f viewProj) {
+		chunkShader.use();
+		chunkShader.mvp.set(viewProj);
+		setupFogShader(chunkShader);
+	}
+
 	private void setupSkyShader(Matrix4f view, Matrix4f proj) {
 		skyShader.use();
 		skyShader.view.set(view);
@@ -179,6 +188,7 @@ public class MainRenderer {
 
 		skyShader.unload();
 		worldShader.unload();
+		chunkShader.unload();
 		skyFramebuffer.unload();
 	}
 }
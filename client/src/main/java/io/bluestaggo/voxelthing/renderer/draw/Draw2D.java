@@ -38,7 +38,7 @@ public class Draw2D {
 	}
 
 	public void addVertex(float x, float y, float r, float g, float b, float u, float v) {
-		bindings.addVertices(x, y, r, g, b, u, v);
+		bindings.putVertex(x, y, r, g, b, u, v);
 	}
 
 	public void addIndex(int i) {
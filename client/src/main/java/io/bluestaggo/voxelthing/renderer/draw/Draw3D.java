@@ -34,7 +34,7 @@ public class Draw3D {
 	}
 
 	public void addVertex(float x, float y, float z, float r, float g, float b, float u, float v) {
-		bindings.addVertices(x, y, z, r, g, b, u, v);
+		bindings.putVertex(x, y, z, r, g, b, u, v);
 	}
 
 	public void draw() {
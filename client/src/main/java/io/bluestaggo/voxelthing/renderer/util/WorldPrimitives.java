@@ -26,7 +26,7 @@ public final class WorldPrimitives {
 				float y = (float)(xy * Math.sin(sectorAngle));
 				float u = (float)j / sectors;
 				float v = (float)i / sectors;
-				bindings.addVertices(x, y, z, 1.0f, 1.0f, 1.0f, u, v);
+				bindings.putVertex(x, y, z, 1.0f, 1.0f, 1.0f, u, v);
 			}
 		}
 
@@ -1,11 +1,7 @@
 package io.bluestaggo.voxelthing.renderer.vertices;
 
-import io.bluestaggo.voxelthing.util.FloatList;
-import io.bluestaggo.voxelthing.util.IntList;
 import org.lwjgl.system.MemoryUtil;
 
-import java.nio.IntBuffer;
-
 import static org.lwjgl.opengl.GL33C.*;
 
 public class Bindings {
@@ -13,12 +9,12 @@ public class Bindings {
 	private final int vao;
 	private final int vbo;
 	private final int ebo;
-	private int nextIndexSize;
 	private int vertexCount;
 	private int indexSize;
+	private long vertexCapacity;
+	private long indexCapacity;
 
-	private final FloatList nextData = new FloatList();
-	private final IntList nextIndices = new IntList();
+	private final MeshData nextData = new MeshData();
 
 	public Bindings(VertexLayout layout) {
 		this.layout = layout;
@@ -32,37 +28,45 @@ public class Bindings {
 	}
 
 	public void addVertex(float vertex) {
-		nextData.add(vertex);
+		nextData.addVertex(vertex);
 	}
 
 	public void addVertices(float... vertices) {
-		nextData.addAll(vertices);
+		nextData.addVertices(vertices);
 	}
 
 	public void addIndex(int index) {
-		nextIndices.add(index);
-		if (index + 1 > nextIndexSize) {
-			nextIndexSize = index + 1;
-		}
+		nextData.addIndex(index);
 	}
 
 	public void addIndices(int... indices) {
-		int offset = nextIndexSize;
-		for (int index : indices) {
-			addIndex(index + offset);
-		}
+		nextData.addIndices(indices);
+	}
+
+	public void putVertex(float x, float y, float z, float r, float g, float b, float u, float v) {
+		nextData.putVertex(x, y, z, r, g, b, u, v);
+	}
+
+	public void putVertex(float x, float y, float r, float g, float b, float u, float v) {
+		nextData.putVertex(x, y, r, g, b, u, v);
+	}
+
+	public void putQuadIndices() {
+		nextData.putQuadIndices();
 	}
 
 	public void upload(boolean dynamic) {
-		setData(nextData, nextIndices, dynamic);
+		upload(nextData, dynamic);
 		clear();
 	}
 
+	public void upload(MeshData data, boolean dynamic) {
+		setData(data, dynamic);
+		indexSize = data.getIndexSize();
+	}
+
 	public void clear() {
 		nextData.clear();
-		nextIndices.clear();
-		indexSize = nextIndexSize;
-		nextIndexSize = 0;
 	}
 
 	public int getVertexCount() {
@@ -73,20 +77,33 @@ public class Bindings {
 		return indexSize;
 	}
 
-	public void setData(FloatList data, IntList indices, boolean dynamic) {
+	public void setData(MeshData data, boolean dynamic) {
 		glBindVertexArray(vao);
-		layout.bufferData(vbo, data, dynamic);
-		vertexCount = indices.size();
-		if (vertexCount == 0) vertexCount = data.size();
+		int usage = dynamic ? GL_DYNAMIC_DRAW : GL_STATIC_DRAW;
 
-		IntBuffer intBuffer = MemoryUtil.memAllocInt(indices.size());
-		indices.putToBuffer(intBuffer);
-		intBuffer.flip();
+		glBindBuffer(GL_ARRAY_BUFFER, vbo);
+		vertexCapacity = bufferData(GL_ARRAY_BUFFER, vertexCapacity,
+				data.getVertexAddress(), data.getVertexBytes(), usage, dynamic);
+		vertexCount = data.getIndexCount();
+		if (vertexCount == 0) vertexCount = (int) (data.getVertexBytes() / layout.getStride());
 
 		glBindBuffer(GL_ELEMENT_ARRAY_BUFFER, ebo);
-		glBufferData(GL_ELEMENT_ARRAY_BUFFER, intBuffer, dynamic ? GL_DYNAMIC_DRAW : GL_STATIC_DRAW);
+		indexCapacity = bufferData(GL_ELEMENT_ARRAY_BUFFER, indexCapacity,
+				data.getIndexAddress(), (long) data.getIndexCount() * Integer.BYTES, usage, dynamic);
+	}
 
-		MemoryUtil.memFree(intBuffer);
+	// Reuses the buffer's existing storage when the data fits, only reallocating when it has to grow or when
+	// most of it would go unused. Dynamic buffers grow with headroom, since they are likely to be refilled.
+	private static long bufferData(int target, long capacity, long address, long bytes, int usage, boolean dynamic) {
+		if (bytes > capacity || bytes < capacity / 4) {
+			capacity = dynamic ? bytes + (bytes >> 2) : bytes;
+			nglBufferData(target, capacity, MemoryUtil.NULL, usage);
+		}
+
+		if (bytes > 0) {
+			nglBufferSubData(target, 0, bytes, address);
+		}
+		return capacity;
 	}
 
 	public void draw() {
@@ -102,5 +119,7 @@ public class Bindings {
 		glDeleteVertexArrays(vao);
 		glDeleteBuffers(vbo);
 		glDeleteBuffers(ebo);
+		vertexCapacity = indexCapacity = 0;
+		nextData.free();
 	}
 }
@@ -0,0 +1,166 @@
+package io.bluestaggo.voxelthing.renderer.vertices;
+
+import org.lwjgl.system.MemoryUtil;
+
+// Growable off-heap vertex and index storage. Nothing is allocated until the first write, and the buffers are
+// kept across clear() calls, so a reused mesh stops allocating once it has grown to fit. Uploads can pass the
+// memory straight to GL. Call free() once the mesh is no longer needed.
+public class MeshData {
+	private static final int DEFAULT_VERTEX_CAPACITY = 1024;
+	private static final int DEFAULT_INDEX_CAPACITY = 256;
+
+	private long vertices;
+	private long vertexCapacity;
+	private long vertexBytes;
+
+	private long indices;
+	private int indexCapacity;
+	private int indexCount;
+	private int indexSize;
+
+	private void ensureVertexCapacity(long bytes) {
+		if (vertexBytes + bytes > vertexCapacity) {
+			long newCapacity = Math.max(vertexCapacity + (vertexCapacity >> 1), vertexBytes + bytes);
+			newCapacity = Math.max(newCapacity, DEFAULT_VERTEX_CAPACITY);
+			vertices = MemoryUtil.nmemReallocChecked(vertices, newCapacity);
+			vertexCapacity = newCapacity;
+		}
+	}
+
+	private void ensureIndexCapacity(int count) {
+		if (indexCount + count > indexCapacity) {
+			int newCapacity = Math.max(indexCapacity + (indexCapacity >> 1), indexCount + count);
+			newCapacity = Math.max(newCapacity, DEFAULT_INDEX_CAPACITY);
+			indices = MemoryUtil.nmemReallocChecked(indices, (long) newCapacity * Integer.BYTES);
+			indexCapacity = newCapacity;
+		}
+	}
+
+	public void putFloat(float value) {
+		ensureVertexCapacity(Float.BYTES);
+		MemoryUtil.memPutFloat(vertices + vertexBytes, value);
+		vertexBytes += Float.BYTES;
+	}
+
+	public void putBytes(int a, int b, int c, int d) {
+		ensureVertexCapacity(4);
+		long address = vertices + vertexBytes;
+		MemoryUtil.memPutByte(address, (byte) a);
+		MemoryUtil.memPutByte(address + 1, (byte) b);
+		MemoryUtil.memPutByte(address + 2, (byte) c);
+		MemoryUtil.memPutByte(address + 3, (byte) d);
+		vertexBytes += 4;
+	}
+
+	// Matches VertexLayout.WORLD
+	public void putVertex(float x, float y, float z, float r, float g, float b, float u, float v) {
+		ensureVertexCapacity(8 * Float.BYTES);
+		long address = vertices + vertexBytes;
+		MemoryUtil.memPutFloat(address, x);
+		MemoryUtil.memPutFloat(address + 4, y);
+		MemoryUtil.memPutFloat(address + 8, z);
+		MemoryUtil.memPutFloat(address + 12, r);
+		MemoryUtil.memPutFloat(address + 16, g);
+		MemoryUtil.memPutFloat(address + 20, b);
+		MemoryUtil.memPutFloat(address + 24, u);
+		MemoryUtil.memPutFloat(address + 28, v);
+		vertexBytes += 8 * Float.BYTES;
+	}
+
+	// Matches VertexLayout.SCREEN
+	public void putVertex(float x, float y, float r, float g, float b, float u, float v) {
+		ensureVertexCapacity(7 * Float.BYTES);
+		long address = vertices + vertexBytes;
+		MemoryUtil.memPutFloat(address, x);
+		MemoryUtil.memPutFloat(address + 4, y);
+		MemoryUtil.memPutFloat(address + 8, r);
+		MemoryUtil.memPutFloat(address + 12, g);
+		MemoryUtil.memPutFloat(address + 16, b);
+		MemoryUtil.memPutFloat(address + 20, u);
+		MemoryUtil.memPutFloat(address + 24, v);
+		vertexBytes += 7 * Float.BYTES;
+	}
+
+	public void addVertex(float vertex) {
+		putFloat(vertex);
+	}
+
+	public void addVertices(float... vertices) {
+		for (float vertex : vertices) {
+			putFloat(vertex);
+		}
+	}
+
+	public void addIndex(int index) {
+		ensureIndexCapacity(1);
+		MemoryUtil.memPutInt(indices + (long) indexCount * Integer.BYTES, index);
+		indexCount++;
+		if (index + 1 > indexSize) {
+			indexSize = index + 1;
+		}
+	}
+
+	public void addIndices(int... indices) {
+		int offset = indexSize;
+		for (int index : indices) {
+			addIndex(index + offset);
+		}
+	}
+
+	// Two triangles over the last four vertices, the same as addIndices(0, 1, 2, 2, 3, 0)
+	public void putQuadIndices() {
+		ensureIndexCapacity(6);
+		int base = indexSize;
+		long address = indices + (long) indexCount * Integer.BYTES;
+		MemoryUtil.memPutInt(address, base);
+		MemoryUtil.memPutInt(address + 4, base + 1);
+		MemoryUtil.memPutInt(address + 8, base + 2);
+		MemoryUtil.memPutInt(address + 12, base + 2);
+		MemoryUtil.memPutInt(address + 16, base + 3);
+		MemoryUtil.memPutInt(address + 20, base);
+		indexCount += 6;
+		indexSize = base + 4;
+	}
+
+	public long getVertexAddress() {
+		return vertices;
+	}
+
+	public long getVertexBytes() {
+		return vertexBytes;
+	}
+
+	public long getIndexAddress() {
+		return indices;
+	}
+
+	public int getIndexCount() {
+		return indexCount;
+	}
+
+	public int getIndexSize() {
+		return indexSize;
+	}
+
+	public long getCapacityBytes() {
+		return vertexCapacity + (long) indexCapacity * Integer.BYTES;
+	}
+
+	public boolean isEmpty() {
+		return vertexBytes == 0;
+	}
+
+	public void clear() {
+		vertexBytes = 0;
+		indexCount = 0;
+		indexSize = 0;
+	}
+
+	public void free() {
+		MemoryUtil.nmemFree(vertices);
+		MemoryUtil.nmemFree(indices);
+		vertices = indices = MemoryUtil.NULL;
+		vertexCapacity = vertexBytes = 0;
+		indexCapacity = indexCount = indexSize = 0;
+	}
+}
@@ -0,0 +1,42 @@
+package io.bluestaggo.voxelthing.renderer.vertices;
+
+import java.util.ArrayDeque;
+
+// Staging meshes for uploads. Released meshes keep their off-heap storage for the next acquire, except for
+// unusually large ones and anything past the pool's size, which are freed so one big mesh can't pin memory.
+public class MeshDataPool {
+	private final ArrayDeque<MeshData> free = new ArrayDeque<>();
+	private final int maxPooled;
+	private final long maxPooledBytes;
+
+	public MeshDataPool(int maxPooled, long maxPooledBytes) {
+		this.maxPooled = maxPooled;
+		this.maxPooledBytes = maxPooledBytes;
+	}
+
+	public synchronized MeshData acquire() {
+		MeshData mesh = free.poll();
+		return mesh != null ? mesh : new MeshData();
+	}
+
+	public synchronized void release(MeshData mesh) {
+		if (free.size() >= maxPooled || mesh.getCapacityBytes() > maxPooledBytes) {
+			mesh.free();
+			return;
+		}
+
+		mesh.clear();
+		free.add(mesh);
+	}
+
+	public synchronized int getPooledCount() {
+		return free.size();
+	}
+
+	public synchronized void free() {
+		MeshData mesh;
+		while ((mesh = free.poll()) != null) {
+			mesh.free();
+		}
+	}
+}
@@ -1,9 +1,5 @@
 package io.bluestaggo.voxelthing.renderer.vertices;
 
-import io.bluestaggo.voxelthing.util.FloatList;
-import org.lwjgl.system.MemoryUtil;
-
-import java.nio.FloatBuffer;
 import java.util.Arrays;
 
 import static org.lwjgl.opengl.GL33C.*;
@@ -14,6 +10,11 @@ public class VertexLayout {
 			VertexType.COLOR3F,
 			VertexType.VECTOR2F
 	);
+	// Chunk-relative x, y, z and shade, then tile-unit u, v and atlas tile x, y
+	public static final VertexLayout CHUNK = new VertexLayout(
+			VertexType.VECTOR4UB,
+			VertexType.VECTOR4UB
+	);
 	public static final VertexLayout SCREEN = new VertexLayout(
 			VertexType.VECTOR2F,
 			VertexType.COLOR3F,
@@ -21,36 +22,36 @@ public class VertexLayout {
 	);
 
 	private final VertexType[] vertexTypes;
+	private final int stride;
 
 	public VertexLayout(VertexType... vertexTypes) {
 		this.vertexTypes = vertexTypes;
+		this.stride = Arrays.stream(vertexTypes)
+				.mapToInt(VertexType::getStride)
+				.sum();
+	}
+
+	public int getStride() {
+		return stride;
 	}
 
 	public int genBuffer(int vao) {
 		int buffer = glGenBuffers();
 		glBindVertexArray(vao);
 
-		int stride = Arrays.stream(vertexTypes)
-				.mapToInt(VertexType::getStride)
-				.sum();
 		int size = 0;
 		glBindBuffer(GL_ARRAY_BUFFER, buffer);
 		for (int i = 0; i < vertexTypes.length; i++) {
 			VertexType type = vertexTypes[i];
-			glVertexAttribPointer(i, type.size, GL_FLOAT, type.normalized, stride, size);
+			if (type.integer) {
+				glVertexAttribIPointer(i, type.size, type.glType, stride, size);
+			} else {
+				glVertexAttribPointer(i, type.size, type.glType, type.normalized, stride, size);
+			}
 			glEnableVertexAttribArray(i);
 			size += type.getStride();
 		}
 
 		return buffer;
 	}
-
-	public void bufferData(int buffer, FloatList data, boolean dynamic) {
-		glBindBuffer(GL_ARRAY_BUFFER, buffer);
-		FloatBuffer floatBuffer = MemoryUtil.memAllocFloat(data.size() * 4);
-		data.putToBuffer(floatBuffer);
-		floatBuffer.flip();
-		glBufferData(GL_ARRAY_BUFFER, floatBuffer, dynamic ? GL_DYNAMIC_DRAW : GL_STATIC_DRAW);
-		MemoryUtil.memFree(floatBuffer);
-	}
 }
@@ -1,23 +1,38 @@
 package io.bluestaggo.voxelthing.renderer.vertices;
 
+import static org.lwjgl.opengl.GL33C.GL_FLOAT;
+import static org.lwjgl.opengl.GL33C.GL_UNSIGNED_BYTE;
+
 public class VertexType {
 	public static final VertexType VECTOR2F = new VertexType(2);
 	public static final VertexType VECTOR3F = new VertexType(3);
 	public static final VertexType COLOR3F = new VertexType(3, true);
+	public static final VertexType VECTOR4UB = new VertexType(4, GL_UNSIGNED_BYTE, 1, false, true);
 
 	public final int size;
+	public final int glType;
+	public final int bytes;
 	public final boolean normalized;
+	public final boolean integer;
 
 	public VertexType(int size) {
 		this(size, false);
 	}
 
 	public VertexType(int size, boolean normalized) {
+		this(size, GL_FLOAT, 4, normalized, false);
+	}
+
+	// Integer types are read by the shader as ints or uints rather than being converted to floats
+	public VertexType(int size, int glType, int bytes, boolean normalized, boolean integer) {
 		this.size = size;
+		this.glType = glType;
+		this.bytes = bytes;
 		this.normalized = normalized;
+		this.integer = integer;
 	}
 
 	public int getStride() {
-		return size * 4;
+		return size * bytes;
 	}
 }
@@ -1,6 +1,6 @@
 package io.bluestaggo.voxelthing.renderer.world;
 
-import io.bluestaggo.voxelthing.renderer.vertices.Bindings;
+import io.bluestaggo.voxelthing.renderer.vertices.MeshData;
 import io.bluestaggo.voxelthing.world.Chunk;
 import io.bluestaggo.voxelthing.world.Direction;
 import io.bluestaggo.voxelthing.world.IBlockAccess;
@@ -17,121 +17,275 @@ public class BlockRenderer {
 			this::renderBottomFace,
 			this::renderTopFace,
 	};
+	private final QuadRenderer[] QUAD_RENDERERS = {
+			this::addNorthQuad,
+			this::addSouthQuad,
+			this::addWestQuad,
+			this::addEastQuad,
+			this::addBottomQuad,
+			this::addTopQuad,
+	};
+
+	// Meshing runs on several worker threads at once, so each keeps its own mask
+	private final ThreadLocal<int[]> greedyMask = ThreadLocal.withInitial(() -> new int[Chunk.AREA]);
+
+	public volatile MeshingMode meshingMode = MeshingMode.PER_FACE;
 
 	@FunctionalInterface
 	private interface SideRenderer {
-		void render(Bindings bindings, IBlockAccess blockAccess, Block block, int x, int y, int z);
+		void render(MeshData mesh, IBlockAccess blockAccess, Block block, int x, int y, int z);
+	}
+
+	@FunctionalInterface
+	private interface QuadRenderer {
+		void render(MeshData mesh, int x, int y, int z, int width, int height, int tile);
 	}
 
 	private float getShade(int amount) {
 		return 1.0f - SHADE_FACTOR * amount;
 	}
 
-	public boolean render(Bindings bindings, IBlockAccess blockAccess, Chunk chunk, int x, int y, int z) {
-		Block block = chunk.getBlock(x, y, z);
+	private int getPackedShade(int amount) {
+		return Math.round(getShade(amount) * 255.0f);
+	}
+
+	public void renderChunk(MeshData mesh, IBlockAccess blockAccess, int cx, int cy, int cz) {
+		if (meshingMode == MeshingMode.GREEDY) {
+			renderChunkGreedy(mesh, blockAccess, cx, cy, cz);
+			return;
+		}
+
+		for (int x = 0; x < Chunk.LENGTH; x++) {
+			for (int y = 0; y < Chunk.LENGTH; y++) {
+				for (int z = 0; z < Chunk.LENGTH; z++) {
+					render(mesh, blockAccess, x + Chunk.LENGTH * cx, y + Chunk.LENGTH * cy, z + Chunk.LENGTH * cz);
+				}
+			}
+		}
+	}
+
+	public boolean render(MeshData mesh, IBlockAccess blockAccess, int x, int y, int z) {
+		Block block = blockAccess.getBlock(x, y, z);
 		if (block == null) {
 			return false;
 		}
 
-		int xx = x + Chunk.LENGTH * chunk.x;
-		int yy = y + Chunk.LENGTH * chunk.y;
-		int zz = z + Chunk.LENGTH * chunk.z;
 		for (Direction dir : Direction.ALL) {
-			if (block.isFaceDrawn(blockAccess, xx + dir.X, yy + dir.Y, zz + dir.Z, dir)) {
-				SIDE_RENDERERS[dir.ordinal()].render(bindings, blockAccess, block, xx, yy, zz);
+			if (block.isFaceDrawn(blockAccess, x + dir.X, y + dir.Y, z + dir.Z, dir)) {
+				SIDE_RENDERERS[dir.ordinal()].render(mesh, blockAccess, block, x, y, z);
 			}
 		}
 
 		return true;
 	}
 
-	private void renderNorthFace(Bindings bindings, IBlockAccess blockAccess, Block block, int x, int y, int z) {
-		Vector2i texture = block.getTexture().get(Direction.NORTH, blockAccess, x, y, z);
-		float texX = texture.x * Block.TEXTURE_WIDTH;
-		float texY = texture.y * Block.TEXTURE_WIDTH;
-		float texXp = texX + Block.TEXTURE_WIDTH;
-		float texYp = texY + Block.TEXTURE_WIDTH;
-		float shade = getShade(1);
-
-		bindings.addVertices(   x + 1,  y + 1,  z,  shade,  shade,  shade,  texX,   texY    );
-		bindings.addVertices(   x + 1,  y,      z,  shade,  shade,  shade,  texX,   texYp   );
-		bindings.addVertices(   x,      y,      z,  shade,  shade,  shade,  texXp,  texYp   );
-		bindings.addVertices(   x,      y + 1,  z,  shade,  shade,  shade,  texXp,  texY    );
-		bindings.addIndices(0, 1, 2, 2, 3, 0);
-	}
-
-	private void renderSouthFace(Bindings bindings, IBlockAccess blockAccess, Block block, int x, int y, int z) {
-		Vector2i texture = block.getTexture().get(Direction.SOUTH, blockAccess, x, y, z);
-		float texX = texture.x * Block.TEXTURE_WIDTH;
-		float texY = texture.y * Block.TEXTURE_WIDTH;
-		float texXp = texX + Block.TEXTURE_WIDTH;
-		float texYp = texY + Block.TEXTURE_WIDTH;
-		float shade = getShade(3);
-
-		bindings.addVertices(   x,      y + 1,  z + 1,  shade,  shade,  shade,  texX,   texY    );
-		bindings.addVertices(   x,      y,      z + 1,  shade,  shade,  shade,  texX,   texYp   );
-		bindings.addVertices(   x + 1,  y,      z + 1,  shade,  shade,  shade,  texXp,  texYp   );
-		bindings.addVertices(   x + 1,  y + 1,  z + 1,  shade,  shade,  shade,  texXp,  texY    );
-		bindings.addIndices(0, 1, 2, 2, 3, 0);
-	}
-
-	private void renderWestFace(Bindings bindings, IBlockAccess blockAccess, Block block, int x, int y, int z) {
-		Vector2i texture = block.getTexture().get(Direction.WEST, blockAccess, x, y, z);
-		float texX = texture.x * Block.TEXTURE_WIDTH;
-		float texY = texture.y * Block.TEXTURE_WIDTH;
-		float texXp = texX + Block.TEXTURE_WIDTH;
-		float texYp = texY + Block.TEXTURE_WIDTH;
-		float shade = getShade(2);
-
-		bindings.addVertices(   x,  y + 1,  z,      shade,  shade,  shade,  texX,   texY    );
-		bindings.addVertices(   x,  y,      z,      shade,  shade,  shade,  texX,   texYp   );
-		bindings.addVertices(   x,  y,      z + 1,  shade,  shade,  shade,  texXp,  texYp   );
-		bindings.addVertices(   x,  y + 1,  z + 1,  shade,  shade,  shade,  texXp,  texY    );
-		bindings.addIndices(0, 1, 2, 2, 3, 0);
-	}
-
-	private void renderEastFace(Bindings bindings, IBlockAccess blockAccess, Block block, int x, int y, int z) {
-		Vector2i texture = block.getTexture().get(Direction.EAST, blockAccess, x, y, z);
-		float texX = texture.x * Block.TEXTURE_WIDTH;
-		float texY = texture.y * Block.TEXTURE_WIDTH;
-		float texXp = texX + Block.TEXTURE_WIDTH;
-		float texYp = texY + Block.TEXTURE_WIDTH;
-		float shade = getShade(2);
-
-		bindings.addVertices(   x + 1,  y + 1,  z + 1,  shade,  shade,  shade,  texX,   texY    );
-		bindings.addVertices(   x + 1,  y,      z + 1,  shade,  shade,  shade,  texX,   texYp   );
-		bindings.addVertices(   x + 1,  y,      z,      shade,  shade,  shade,  texXp,  texYp   );
-		bindings.addVertices(   x + 1,  y + 1,  z,      shade,  shade,  shade,  texXp,  texY    );
-		bindings.addIndices(0, 1, 2, 2, 3, 0);
-	}
-
-	private void renderBottomFace(Bindings bindings, IBlockAccess blockAccess, Block block, int x, int y, int z) {
-		Vector2i texture = block.getTexture().get(Direction.BOTTOM, blockAccess, x, y, z);
-		float texX = texture.x * Block.TEXTURE_WIDTH;
-		float texY = texture.y * Block.TEXTURE_WIDTH;
-		float texXp = texX + Block.TEXTURE_WIDTH;
-		float texYp = texY + Block.TEXTURE_WIDTH;
-		float shade = getShade(4);
-
-		bindings.addVertices(   x + 1,  y,  z,      shade,  shade,  shade,  texX,   texY    );
-		bindings.addVertices(   x + 1,  y,  z + 1,  shade,  shade,  shade,  texX,   texYp   );
-		bindings.addVertices(   x,      y,  z + 1,  shade,  shade,  shade,  texXp,  texYp   );
-		bindings.addVertices(   x,      y,  z,      shade,  shade,  shade,  texXp,  texY    );
-		bindings.addIndices(0, 1, 2, 2, 3, 0);
-	}
-
-	private void renderTopFace(Bindings bindings, IBlockAccess blockAccess, Block block, int x, int y, int z) {
-		Vector2i texture = block.getTexture().get(Direction.TOP, blockAccess, x, y, z);
-		float texX = texture.x * Block.TEXTURE_WIDTH;
-		float texY = texture.y * Block.TEXTURE_WIDTH;
-		float texXp = texX + Block.TEXTURE_WIDTH;
-		float texYp = texY + Block.TEXTURE_WIDTH;
-		float shade = getShade(0);
-
-		bindings.addVertices(   x + 1,  y + 1,  z + 1,  shade,  shade,  shade,  texX,   texY    );
-		bindings.addVertices(   x + 1,  y + 1,  z,      shade,  shade,  shade,  texX,   texYp   );
-		bindings.addVertices(   x,      y + 1,  z,      shade,  shade,  shade,  texXp,  texYp   );
-		bindings.addVertices(   x,      y + 1,  z + 1,  shade,  shade,  shade,  texXp,  texY    );
-		bindings.addIndices(0, 1, 2, 2, 3, 0);
+	// Merges visible faces sharing a slice, direction and texture tile into as few rectangles as possible.
+	// Faces are collected per slice into a mask of tile keys indexed by (a, b), where a and b are the two
+	// in-plane axes: x/y for north and south, z/y for west and east, x/z for bottom and top.
+	private void renderChunkGreedy(MeshData mesh, IBlockAccess blockAccess, int cx, int cy, int cz) {
+		int[] mask = greedyMask.get();
+		int gx = cx * Chunk.LENGTH;
+		int gy = cy * Chunk.LENGTH;
+		int gz = cz * Chunk.LENGTH;
+
+		for (Direction dir : Direction.ALL) {
+			for (int slice = 0; slice < Chunk.LENGTH; slice++) {
+				for (int b = 0; b < Chunk.LENGTH; b++) {
+					for (int a = 0; a < Chunk.LENGTH; a++) {
+						int x, y, z;
+						switch (dir) {
+							case NORTH, SOUTH -> { x = gx + a; y = gy + b; z = gz + slice; }
+							case WEST, EAST -> { x = gx + slice; y = gy + b; z = gz + a; }
+							default -> { x = gx + a; y = gy + slice; z = gz + b; }
+						}
+
+						mask[a + b * Chunk.LENGTH] = getFaceKey(blockAccess, dir, x, y, z);
+					}
+				}
+
+				for (int b = 0; b < Chunk.LENGTH; b++) {
+					for (int a = 0; a < Chunk.LENGTH; ) {
+						int key = mask[a + b * Chunk.LENGTH];
+						if (key == 0) {
+							a++;
+							continue;
+						}
+
+						int width = 1;
+						while (a + width < Chunk.LENGTH && mask[a + width + b * Chunk.LENGTH] == key) {
+							width++;
+						}
+
+						int height = 1;
+						expand:
+						while (b + height < Chunk.LENGTH) {
+							for (int i = 0; i < width; i++) {
+								if (mask[a + i + (b + height) * Chunk.LENGTH] != key) {
+									break expand;
+								}
+							}
+							height++;
+						}
+
+						for (int j = 0; j < height; j++) {
+							for (int i = 0; i < width; i++) {
+								mask[a + i + (b + j) * Chunk.LENGTH] = 0;
+							}
+						}
+
+						QuadRenderer quad = QUAD_RENDERERS[dir.ordinal()];
+						switch (dir) {
+							case NORTH, SOUTH -> quad.render(mesh, gx + a, gy + b, gz + slice, width, height, key - 1);
+							case WEST, EAST -> quad.render(mesh, gx + slice, gy + b, gz + a, width, height, key - 1);
+							default -> quad.render(mesh, gx + a, gy + slice, gz + b, width, height, key - 1);
+						}
+
+						a += width;
+					}
+				}
+			}
+		}
+	}
+
+	private int getFaceKey(IBlockAccess blockAccess, Direction dir, int x, int y, int z) {
+		Block block = blockAccess.getBlock(x, y, z);
+		if (block == null || !block.isFaceDrawn(blockAccess, x + dir.X, y + dir.Y, z + dir.Z, dir)) {
+			return 0;
+		}
+
+		return getTile(block, dir, blockAccess, x, y, z) + 1;
+	}
+
+	private int getTile(Block block, Direction dir, IBlockAccess blockAccess, int x, int y, int z) {
+		Vector2i texture = block.getTexture().get(dir, blockAccess, x, y, z);
+		return texture.x + texture.y * Block.TEXTURE_ROWS;
+	}
+
+	private void renderNorthFace(MeshData mesh, IBlockAccess blockAccess, Block block, int x, int y, int z) {
+		addNorthQuad(mesh, x & Chunk.LENGTH_MASK, y & Chunk.LENGTH_MASK, z & Chunk.LENGTH_MASK, 1, 1,
+				getTile(block, Direction.NORTH, blockAccess, x, y, z));
+	}
+
+	private void renderSouthFace(MeshData mesh, IBlockAccess blockAccess, Block block, int x, int y, int z) {
+		addSouthQuad(mesh, x & Chunk.LENGTH_MASK, y & Chunk.LENGTH_MASK, z & Chunk.LENGTH_MASK, 1, 1,
+				getTile(block, Direction.SOUTH, blockAccess, x, y, z));
+	}
+
+	private void renderWestFace(MeshData mesh, IBlockAccess blockAccess, Block block, int x, int y, int z) {
+		addWestQuad(mesh, x & Chunk.LENGTH_MASK, y & Chunk.LENGTH_MASK, z & Chunk.LENGTH_MASK, 1, 1,
+				getTile(block, Direction.WEST, blockAccess, x, y, z));
+	}
+
+	private void renderEastFace(MeshData mesh, IBlockAccess blockAccess, Block block, int x, int y, int z) {
+		addEastQuad(mesh, x & Chunk.LENGTH_MASK, y & Chunk.LENGTH_MASK, z & Chunk.LENGTH_MASK, 1, 1,
+				getTile(block, Direction.EAST, blockAccess, x, y, z));
+	}
+
+	private void renderBottomFace(MeshData mesh, IBlockAccess blockAccess, Block block, int x, int y, int z) {
+		addBottomQuad(mesh, x & Chunk.LENGTH_MASK, y & Chunk.LENGTH_MASK, z & Chunk.LENGTH_MASK, 1, 1,
+				getTile(block, Direction.BOTTOM, blockAccess, x, y, z));
+	}
+
+	private void renderTopFace(MeshData mesh, IBlockAccess blockAccess, Block block, int x, int y, int z) {
+		addTopQuad(mesh, x & Chunk.LENGTH_MASK, y & Chunk.LENGTH_MASK, z & Chunk.LENGTH_MASK, 1, 1,
+				getTile(block, Direction.TOP, blockAccess, x, y, z));
+	}
+
+	// Positions are relative to the chunk and UVs are measured in whole tiles, so a merged quad repeats its tile
+	// across its width and height. Everything fits in an unsigned byte, see VertexLayout.CHUNK.
+	private void addNorthQuad(MeshData mesh, int x, int y, int z, int w, int h, int tile) {
+		int tx = tile % Block.TEXTURE_ROWS;
+		int ty = tile / Block.TEXTURE_ROWS;
+		int shade = getPackedShade(1);
+
+		mesh.putBytes(x + w, y + h, z, shade);
+		mesh.putBytes(0, 0, tx, ty);
+		mesh.putBytes(x + w, y, z, shade);
+		mesh.putBytes(0, h, tx, ty);
+		mesh.putBytes(x, y, z, shade);
+		mesh.putBytes(w, h, tx, ty);
+		mesh.putBytes(x, y + h, z, shade);
+		mesh.putBytes(w, 0, tx, ty);
+		mesh.putQuadIndices();
+	}
+
+	private void addSouthQuad(MeshData mesh, int x, int y, int z, int w, int h, int tile) {
+		int tx = tile % Block.TEXTURE_ROWS;
+		int ty = tile / Block.TEXTURE_ROWS;
+		int shade = getPackedShade(3);
+
+		mesh.putBytes(x, y + h, z + 1, shade);
+		mesh.putBytes(0, 0, tx, ty);
+		mesh.putBytes(x, y, z + 1, shade);
+		mesh.putBytes(0, h, tx, ty);
+		mesh.putBytes(x + w, y, z + 1, shade);
+		mesh.putBytes(w, h, tx, ty);
+		mesh.putBytes(x + w, y + h, z + 1, shade);
+		mesh.putBytes(w, 0, tx, ty);
+		mesh.putQuadIndices();
+	}
+
+	private void addWestQuad(MeshData mesh, int x, int y, int z, int w, int h, int tile) {
+		int tx = tile % Block.TEXTURE_ROWS;
+		int ty = tile / Block.TEXTURE_ROWS;
+		int shade = getPackedShade(2);
+
+		mesh.putBytes(x, y + h, z, shade);
+		mesh.putBytes(0, 0, tx, ty);
+		mesh.putBytes(x, y, z, shade);
+		mesh.putBytes(0, h, tx, ty);
+		mesh.putBytes(x, y, z + w, shade);
+		mesh.putBytes(w, h, tx, ty);
+		mesh.putBytes(x, y + h, z + w, shade);
+		mesh.putBytes(w, 0, tx, ty);
+		mesh.putQuadIndices();
+	}
+
+	private void addEastQuad(MeshData mesh, int x, int y, int z, int w, int h, int tile) {
+		int tx = tile % Block.TEXTURE_ROWS;
+		int ty = tile / Block.TEXTURE_ROWS;
+		int shade = getPackedShade(2);
+
+		mesh.putBytes(x + 1, y + h, z + w, shade);
+		mesh.putBytes(0, 0, tx, ty);
+		mesh.putBytes(x + 1, y, z + w, shade);
+		mesh.putBytes(0, h, tx, ty);
+		mesh.putBytes(x + 1, y, z, shade);
+		mesh.putBytes(w, h, tx, ty);
+		mesh.putBytes(x + 1, y + h, z, shade);
+		mesh.putBytes(w, 0, tx, ty);
+		mesh.putQuadIndices();
+	}
+
+	private void addBottomQuad(MeshData mesh, int x, int y, int z, int w, int h, int tile) {
+		int tx = tile % Block.TEXTURE_ROWS;
+		int ty = tile / Block.TEXTURE_ROWS;
+		int shade = getPackedShade(4);
+
+		mesh.putBytes(x + w, y, z, shade);
+		mesh.putBytes(0, 0, tx, ty);
+		mesh.putBytes(x + w, y, z + h, shade);
+		mesh.putBytes(0, h, tx, ty);
+		mesh.putBytes(x, y, z + h, shade);
+		mesh.putBytes(w, h, tx, ty);
+		mesh.putBytes(x, y, z, shade);
+		mesh.putBytes(w, 0, tx, ty);
+		mesh.putQuadIndices();
+	}
+
+	private void addTopQuad(MeshData mesh, int x, int y, int z, int w, int h, int tile) {
+		int tx = tile % Block.TEXTURE_ROWS;
+		int ty = tile / Block.TEXTURE_ROWS;
+		int shade = getPackedShade(0);
+
+		mesh.putBytes(x + w, y + 1, z + h, shade);
+		mesh.putBytes(0, 0, tx, ty);
+		mesh.putBytes(x + w, y + 1, z, shade);
+		mesh.putBytes(0, h, tx, ty);
+		mesh.putBytes(x, y + 1, z, shade);
+		mesh.putBytes(w, h, tx, ty);
+		mesh.putBytes(x, y + 1, z + h, shade);
+		mesh.putBytes(w, 0, tx, ty);
+		mesh.putQuadIndices();
 	}
 }
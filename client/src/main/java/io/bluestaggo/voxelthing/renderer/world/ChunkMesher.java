@@ -0,0 +1,115 @@
+package io.bluestaggo.voxelthing.renderer.world;
+
+import io.bluestaggo.voxelthing.renderer.vertices.MeshData;
+import io.bluestaggo.voxelthing.renderer.vertices.MeshDataPool;
+import io.bluestaggo.voxelthing.world.ChunkSnapshot;
+import io.bluestaggo.voxelthing.world.World;
+
+import java.util.ArrayDeque;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.ForkJoinWorkerThread;
+import java.util.concurrent.TimeUnit;
+
+public class ChunkMesher {
+	public static final long UPLOAD_BUDGET_NANOS = 4_000_000L;
+	private static final long MAX_POOLED_MESH_BYTES = 4L * 1024 * 1024;
+
+	private final BlockRenderer blockRenderer;
+	private final ForkJoinPool pool;
+	private final int maxInFlight;
+	private final ConcurrentLinkedQueue<Task> finished = new ConcurrentLinkedQueue<>();
+	// Tasks keep their snapshot between uses, only touched on the main thread
+	private final ArrayDeque<Task> freeTasks = new ArrayDeque<>();
+	private final MeshDataPool meshPool;
+	private int inFlight;
+
+	public ChunkMesher(BlockRenderer blockRenderer) {
+		this(blockRenderer, Math.max(1, Runtime.getRuntime().availableProcessors() / 2));
+	}
+
+	public ChunkMesher(BlockRenderer blockRenderer, int threads) {
+		this.blockRenderer = blockRenderer;
+		maxInFlight = threads * 4;
+		meshPool = new MeshDataPool(maxInFlight, MAX_POOLED_MESH_BYTES);
+		pool = new ForkJoinPool(threads, p -> {
+			ForkJoinWorkerThread thread = ForkJoinPool.defaultForkJoinWorkerThreadFactory.newThread(p);
+			thread.setName("Chunk Mesher " + thread.getPoolIndex());
+			thread.setDaemon(true);
+			return thread;
+		}, null, true);
+	}
+
+	public boolean isBusy() {
+		return inFlight >= maxInFlight;
+	}
+
+	public void submit(ChunkRenderer renderer, World world, int x, int y, int z, int sequence) {
+		Task task = freeTasks.poll();
+		if (task == null) {
+			task = new Task();
+		}
+
+		task.renderer = renderer;
+		task.sequence = sequence;
+		task.mesh = meshPool.acquire();
+		task.snapshot.capture(world, x, y, z);
+		inFlight++;
+		pool.execute(task);
+	}
+
+	public void uploadFinished(long budgetNanos) {
+		long start = System.nanoTime();
+		Task task;
+		while ((task = finished.poll()) != null) {
+			inFlight--;
+			if (task.error != null) {
+				throw new RuntimeException("Failed to build chunk mesh", task.error);
+			}
+
+			ChunkSnapshot snapshot = task.snapshot;
+			task.renderer.uploadMesh(snapshot.x, snapshot.y, snapshot.z, task.sequence, task.mesh);
+			meshPool.release(task.mesh);
+			task.renderer = null;
+			task.mesh = null;
+			freeTasks.add(task);
+			if (System.nanoTime() - start >= budgetNanos) {
+				break;
+			}
+		}
+	}
+
+	public void shutdown() {
+		pool.shutdownNow();
+		try {
+			pool.awaitTermination(5, TimeUnit.SECONDS);
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+		}
+
+		Task task;
+		while ((task = finished.poll()) != null) {
+			task.mesh.free();
+		}
+		freeTasks.clear();
+		meshPool.free();
+	}
+
+	private class Task implements Runnable {
+		private final ChunkSnapshot snapshot = new ChunkSnapshot();
+		private MeshData mesh;
+		private ChunkRenderer renderer;
+		private int sequence;
+		private Throwable error;
+
+		@Override
+		public void run() {
+			try {
+				blockRenderer.renderChunk(mesh, snapshot, snapshot.x, snapshot.y, snapshot.z);
+			} catch (Throwable e) {
+				error = e;
+			}
+			finished.add(this);
+		}
+	}
+}
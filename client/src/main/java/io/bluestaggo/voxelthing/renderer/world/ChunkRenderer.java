@@ -3,12 +3,13 @@ package io.bluestaggo.voxelthing.renderer.world;
 import io.bluestaggo.voxelthing.math.MathUtil;
 import io.bluestaggo.voxelthing.renderer.MainRenderer;
 import io.bluestaggo.voxelthing.renderer.vertices.Bindings;
+import io.bluestaggo.voxelthing.renderer.vertices.MeshData;
 import io.bluestaggo.voxelthing.renderer.vertices.VertexLayout;
 import io.bluestaggo.voxelthing.window.Window;
 import io.bluestaggo.voxelthing.world.Chunk;
-import io.bluestaggo.voxelthing.world.ChunkCache;
-import io.bluestaggo.voxelthing.world.IBlockAccess;
+import io.bluestaggo.voxelthing.world.Direction;
 import io.bluestaggo.voxelthing.world.World;
+import io.bluestaggo.voxelthing.world.block.Block;
 import org.joml.FrustumIntersection;
 
 public class ChunkRenderer {
@@ -18,8 +19,12 @@ public class ChunkRenderer {
 	private boolean needsUpdate;
 	private boolean empty;
 	private double firstAppearance;
+	private int vertexCount;
+	private int meshSequence;
+	private int uploadedSequence;
+	private boolean unloaded;
 
-	private final Bindings bindings = new Bindings(VertexLayout.WORLD);
+	private final Bindings bindings = new Bindings(VertexLayout.CHUNK);
 
 	public ChunkRenderer(MainRenderer renderer, World world, int x, int y, int z) {
 		this.renderer = renderer;
@@ -51,36 +56,77 @@ public class ChunkRenderer {
 		return empty;
 	}
 
-	public void render() {
-		boolean wasEmpty = empty;
+	public int getVertexCount() {
+		return vertexCount;
+	}
+
+	public void render(ChunkMesher mesher) {
+		if (!needsUpdate) {
+			return;
+		}
+
+		Chunk chunk = world.getChunkAt(x, y, z);
+		if (chunk == null) {
+			return;
+		}
 
-		if (needsUpdate) {
+		needsUpdate = false;
+		if (chunk.isEmpty() || isBuried(chunk)) {
 			empty = true;
-			Chunk chunk = world.getOrLoadChunkAt(x, y, z);
+			uploadedSequence = ++meshSequence;
+			return;
+		}
 
-			if (chunk == null || chunk.isEmpty()) {
-				needsUpdate = false;
-				return;
-			}
+		mesher.submit(this, world, x, y, z, ++meshSequence);
+	}
+
+	public void uploadMesh(int x, int y, int z, int sequence, MeshData mesh) {
+		if (unloaded || x != this.x || y != this.y || z != this.z || sequence <= uploadedSequence) {
+			return;
+		}
+		uploadedSequence = sequence;
+
+		boolean wasEmpty = empty;
+		empty = mesh.isEmpty();
+		if (!empty) {
+			bindings.upload(mesh, true);
+			vertexCount = mesh.getIndexSize();
 
-			IBlockAccess cache = new ChunkCache(world, x, y, z);
-			for (int xx = 0; xx < Chunk.LENGTH; xx++) {
-				for (int yy = 0; yy < Chunk.LENGTH; yy++) {
-					for (int zz = 0; zz < Chunk.LENGTH; zz++) {
-						 empty &= !renderer.blockRenderer.render(bindings, cache, chunk, xx, yy, zz);
-					}
-				}
+			if (wasEmpty) {
+				firstAppearance = Window.getTimeElapsed();
 			}
+		}
+	}
+
+	// A chunk filled with one opaque block and boxed in by others like it has no visible faces
+	private boolean isBuried(Chunk chunk) {
+		Block block = chunk.getUniformBlock();
+		if (block == null || block.isTransparent()) {
+			return false;
+		}
 
-			if (!empty) {
-				bindings.upload(true);
+		for (Direction dir : Direction.ALL) {
+			Chunk neighbour = world.getChunkAt(x + dir.X, y + dir.Y, z + dir.Z);
+			if (neighbour == null) {
+				return false;
+			}
 
-				if (wasEmpty) {
-					firstAppearance = Window.getTimeElapsed();
-				}
+			Block neighbourBlock = neighbour.getUniformBlock();
+			if (neighbourBlock == null || neighbourBlock.isTransparent()) {
+				return false;
 			}
-			needsUpdate = false;
 		}
+
+		return true;
+	}
+
+	public boolean requestChunk() {
+		if (world.chunkExists(x, y, z)) {
+			return true;
+		}
+
+		world.requestChunkAt(x, y, z);
+		return false;
 	}
 
 	public void draw() {
@@ -107,6 +153,7 @@ public class ChunkRenderer {
 	}
 
 	public void unload() {
+		unloaded = true;
 		this.bindings.unload();
 	}
 }
@@ -0,0 +1,6 @@
+package io.bluestaggo.voxelthing.renderer.world;
+
+public enum MeshingMode {
+	PER_FACE,
+	GREEDY
+}
@@ -18,6 +18,8 @@ import static org.lwjgl.opengl.GL33C.*;
 public class WorldRenderer {
 	private final MainRenderer renderer;
 	private final Bindings background;
+	private final ChunkMesher chunkMesher;
+	private final Vector3f chunkPos = new Vector3f();
 
 	private World world;
 	private ChunkRenderer[] chunkRenderers;
@@ -32,6 +34,7 @@ public class WorldRenderer {
 		this.renderer = renderer;
 
 		background = WorldPrimitives.generateSphere(null, 1.0f, 16, 16);
+		chunkMesher = new ChunkMesher(renderer.blockRenderer);
 	}
 
 	public int chunkRendererCoord(int x, int y, int z) {
@@ -71,8 +74,7 @@ public class WorldRenderer {
 	}
 
 	public void draw() {
-		int updates = 0;
-		int maxUpdates = 1;
+		chunkMesher.uploadFinished(ChunkMesher.UPLOAD_BUDGET_NANOS);
 
 		FrustumIntersection frustum = this.renderer.camera.getFrustum();
 		double currentTime = Window.getTimeElapsed();
@@ -80,19 +82,19 @@ public class WorldRenderer {
 		for (ChunkRenderer chunkRenderer : sortedChunkRenderers) {
 			if (!chunkRenderer.inFrustum(frustum)) continue;
 
-			if (updates < maxUpdates) {
-				boolean neededUpdate = chunkRenderer.needsUpdate();
-				chunkRenderer.render();
-				if (neededUpdate) {
-					updates++;
-				}
+			if (chunkRenderer.needsUpdate() && chunkRenderer.requestChunk() && !chunkMesher.isBusy()) {
+				chunkRenderer.render(chunkMesher);
 			}
 
-			renderer.worldShader.fade.set((float)chunkRenderer.getFadeAmount(currentTime));
+			if (chunkRenderer.isEmpty()) continue;
+
+			chunkPos.set(chunkRenderer.getX(), chunkRenderer.getY(), chunkRenderer.getZ()).mul(Chunk.LENGTH);
+			renderer.chunkShader.chunkPos.set(chunkPos);
+			renderer.chunkShader.fade.set((float)chunkRenderer.getFadeAmount(currentTime));
 			chunkRenderer.draw();
 		}
 
-		renderer.worldShader.fade.set(0.0f);
+		renderer.chunkShader.fade.set(0.0f);
 	}
 
 	public void drawSky() {
@@ -132,6 +134,10 @@ public class WorldRenderer {
 			}
 		}
 
+		if (world != null) {
+			world.unloadDistantChunks(x, y, z, renderDistance + 1);
+		}
+
 		sortedChunkRenderers = Arrays.stream(chunkRenderers)
 				.sorted(this::compareChunks)
 				.toList();
@@ -153,6 +159,22 @@ public class WorldRenderer {
 		return Integer.compare(aDist, bDist);
 	}
 
+	public void markAllForUpdate() {
+		for (ChunkRenderer chunkRenderer : chunkRenderers) {
+			chunkRenderer.queueUpdate();
+		}
+	}
+
+	public int getVertexCount() {
+		int vertices = 0;
+		for (ChunkRenderer chunkRenderer : chunkRenderers) {
+			if (!chunkRenderer.isEmpty()) {
+				vertices += chunkRenderer.getVertexCount();
+			}
+		}
+		return vertices;
+	}
+
 	public void markNeighbourUpdateAt(int x, int y, int z) {
 		markUpdateAt(x, y, z);
 		markUpdateAt(x - 1, y, z);
@@ -193,6 +215,7 @@ public class WorldRenderer {
 
 	public void unload() {
 		background.unload();
+		chunkMesher.shutdown();
 
 		if (chunkRenderers != null) {
 			for (ChunkRenderer chunkRenderer : chunkRenderers) {
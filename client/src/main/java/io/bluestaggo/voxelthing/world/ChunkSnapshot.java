@@ -0,0 +1,66 @@
+package io.bluestaggo.voxelthing.world;
+
+import io.bluestaggo.voxelthing.math.MathUtil;
+import io.bluestaggo.voxelthing.world.block.Block;
+
+import java.util.Arrays;
+
+public class ChunkSnapshot implements IBlockAccess {
+	public static final int PADDED_LENGTH = Chunk.LENGTH + 2;
+
+	public int x, y, z;
+	private final Block[] blocks = new Block[PADDED_LENGTH * PADDED_LENGTH * PADDED_LENGTH];
+	private final Chunk[] chunks = new Chunk[27];
+
+	public ChunkSnapshot() {
+	}
+
+	public ChunkSnapshot(World world, int x, int y, int z) {
+		capture(world, x, y, z);
+	}
+
+	// Copies the chunk and its neighbours' blocks, overwriting everything from the previous capture
+	public void capture(World world, int x, int y, int z) {
+		this.x = x;
+		this.y = y;
+		this.z = z;
+
+		for (int xx = 0; xx < 3; xx++) {
+			for (int yy = 0; yy < 3; yy++) {
+				for (int zz = 0; zz < 3; zz++) {
+					chunks[MathUtil.index3D(xx, yy, zz, 3)] = world.getChunkAt(x + xx - 1, y + yy - 1, z + zz - 1);
+				}
+			}
+		}
+
+		for (int xx = 0; xx < PADDED_LENGTH; xx++) {
+			int cx = (xx + Chunk.LENGTH - 1) >> Chunk.SIZE_POW2;
+			int lx = (xx - 1) & Chunk.LENGTH_MASK;
+			for (int yy = 0; yy < PADDED_LENGTH; yy++) {
+				int cy = (yy + Chunk.LENGTH - 1) >> Chunk.SIZE_POW2;
+				int ly = (yy - 1) & Chunk.LENGTH_MASK;
+				for (int zz = 0; zz < PADDED_LENGTH; zz++) {
+					int cz = (zz + Chunk.LENGTH - 1) >> Chunk.SIZE_POW2;
+					int lz = (zz - 1) & Chunk.LENGTH_MASK;
+
+					Chunk chunk = chunks[MathUtil.index3D(cx, cy, cz, 3)];
+					blocks[MathUtil.index3D(xx, yy, zz, PADDED_LENGTH)] = chunk != null ? chunk.getBlock(lx, ly, lz) : null;
+				}
+			}
+		}
+
+		Arrays.fill(chunks, null);
+	}
+
+	@Override
+	public Block getBlock(int x, int y, int z) {
+		x -= (this.x << Chunk.SIZE_POW2) - 1;
+		y -= (this.y << Chunk.SIZE_POW2) - 1;
+		z -= (this.z << Chunk.SIZE_POW2) - 1;
+		if (x < 0 || x >= PADDED_LENGTH || y < 0 || y >= PADDED_LENGTH || z < 0 || z >= PADDED_LENGTH) {
+			return null;
+		}
+
+		return blocks[MathUtil.index3D(x, y, z, PADDED_LENGTH)];
+	}
+}
@@ -5,6 +5,8 @@ import io.bluestaggo.voxelthing.Game;
 import io.bluestaggo.voxelthing.Identifier;
 import io.bluestaggo.voxelthing.renderer.world.WorldRenderer;
 import io.bluestaggo.voxelthing.world.block.Block;
+import io.bluestaggo.voxelthing.world.generation.BlockPlacement;
+import io.bluestaggo.voxelthing.world.storage.WorldSave;
 
 import java.util.ArrayList;
 import java.util.Arrays;
@@ -14,18 +16,17 @@ import java.util.stream.Collectors;
 public class ClientWorld extends World {
 	public final Game game;
 
-	public ClientWorld(Game game, int type) {
-		super(type);
+	public ClientWorld(Game game, int type, long seed, WorldSave save) {
+		super(type, seed, save);
 		this.game = game;
 		game.renderer.worldRenderer.setWorld(this);
 		game.renderer.worldRenderer.loadRenderers();
 	}
 
 	@Override
-	public void loadChunkAt(int cx, int cy, int cz) {
+	public Chunk generateChunk(int cx, int cy, int cz, List<BlockPlacement> placements) {
 		if (cx != 0 || cy != 0 || cz != 0) {
-			super.loadChunkAt(cx, cy, cz);
-			return;
+			return super.generateChunk(cx, cy, cz, placements);
 		}
 
 		byte[] blocks = new byte[Chunk.VOLUME];
@@ -44,8 +45,7 @@ public class ClientWorld extends World {
 		item.map.put("blockArrayType", new ByteItem(1));
 		item.map.put("blocks", new ByteArrayItem(blocks));
 
-		chunkStorage.deserializeChunkAt(cx, cy, cz, item);
-		onChunkAdded(cx, cy, cz);
+		return Chunk.deserialize(this, cx, cy, cz, item);
 	}
 
 	@Override
@@ -61,4 +61,11 @@ public class ClientWorld extends World {
 		WorldRenderer worldRenderer = game.renderer.worldRenderer;
 		worldRenderer.markNeighbourChunkUpdateAt(x, y, z);
 	}
+
+	@Override
+	public void onChunkChanged(int x, int y, int z) {
+		super.onChunkChanged(x, y, z);
+		WorldRenderer worldRenderer = game.renderer.worldRenderer;
+		worldRenderer.markNeighbourChunkUpdateAt(x, y, z);
+	}
 }
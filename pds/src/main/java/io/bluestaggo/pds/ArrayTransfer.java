@@ -0,0 +1,66 @@
+package io.bluestaggo.pds;
+
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+
+// Moves primitive arrays between streams and a small per-thread buffer a chunk at a time,
+// so neither reading nor writing makes a byte copy of the whole array
+final class ArrayTransfer {
+	private static final int CHUNK_SIZE = 8192;
+	private static final ThreadLocal<ByteBuffer> CHUNK = ThreadLocal.withInitial(() -> ByteBuffer.allocate(CHUNK_SIZE));
+
+	@FunctionalInterface
+	interface ChunkCopier {
+		// Copies count elements, starting at element index of the array, out of or into the chunk
+		void copy(ByteBuffer chunk, int index, int count);
+	}
+
+	private ArrayTransfer() {
+	}
+
+	static void read(DataInputStream stream, int count, int elementSize, ChunkCopier copier) throws IOException {
+		ByteBuffer chunk = CHUNK.get();
+		int perChunk = CHUNK_SIZE / elementSize;
+		for (int i = 0; i < count; i += perChunk) {
+			int n = Math.min(perChunk, count - i);
+			stream.readFully(chunk.array(), 0, n * elementSize);
+			chunk.clear().limit(n * elementSize);
+			copier.copy(chunk, i, n);
+		}
+	}
+
+	static void write(DataOutputStream stream, int count, int elementSize, ChunkCopier copier) throws IOException {
+		if (stream instanceof ChannelDataOutputStream channelStream) {
+			channelStream.writeChunks(count, elementSize, copier);
+			return;
+		}
+
+		ByteBuffer chunk = CHUNK.get();
+		int perChunk = CHUNK_SIZE / elementSize;
+		for (int i = 0; i < count; i += perChunk) {
+			int n = Math.min(perChunk, count - i);
+			chunk.clear().limit(n * elementSize);
+			copier.copy(chunk, i, n);
+			stream.write(chunk.array(), 0, n * elementSize);
+		}
+	}
+
+	// Writes the remaining bytes of a buffer, handing them straight to the channel when there is one
+	static void write(DataOutputStream stream, ByteBuffer bytes) throws IOException {
+		if (stream instanceof ChannelDataOutputStream channelStream) {
+			channelStream.writeBuffer(bytes.duplicate());
+		} else if (bytes.hasArray()) {
+			stream.write(bytes.array(), bytes.arrayOffset() + bytes.position(), bytes.remaining());
+		} else {
+			ByteBuffer source = bytes.duplicate();
+			ByteBuffer chunk = CHUNK.get();
+			while (source.hasRemaining()) {
+				int n = Math.min(CHUNK_SIZE, source.remaining());
+				source.get(chunk.array(), 0, n);
+				stream.write(chunk.array(), 0, n);
+			}
+		}
+	}
+}
@@ -0,0 +1,66 @@
+package io.bluestaggo.pds;
+
+import java.io.DataInputStream;
+import java.io.InputStream;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+
+// Reads items out of a ByteBuffer. Array items take their data straight from the buffer,
+// or with views set, keep a slice of it instead of copying at all.
+class BufferDataInputStream extends DataInputStream {
+	private final ByteBuffer buffer;
+	final boolean views;
+
+	BufferDataInputStream(ByteBuffer buffer, boolean views) {
+		super(new BufferInputStream(buffer));
+		this.buffer = buffer;
+		this.views = views;
+	}
+
+	// The next length bytes as a big-endian slice, moving past them
+	ByteBuffer take(int length) {
+		int position = buffer.position();
+		ByteBuffer slice = buffer.slice(position, length).order(ByteOrder.BIG_ENDIAN);
+		buffer.position(position + length);
+		return slice;
+	}
+
+	private static class BufferInputStream extends InputStream {
+		private final ByteBuffer buffer;
+
+		private BufferInputStream(ByteBuffer buffer) {
+			this.buffer = buffer;
+		}
+
+		@Override
+		public int read() {
+			return buffer.hasRemaining() ? buffer.get() & 0xFF : -1;
+		}
+
+		@Override
+		public int read(byte[] b, int off, int len) {
+			if (len == 0) {
+				return 0;
+			}
+			if (!buffer.hasRemaining()) {
+				return -1;
+			}
+
+			len = Math.min(len, buffer.remaining());
+			buffer.get(b, off, len);
+			return len;
+		}
+
+		@Override
+		public long skip(long n) {
+			int skipped = (int) Math.min(Math.max(n, 0), buffer.remaining());
+			buffer.position(buffer.position() + skipped);
+			return skipped;
+		}
+
+		@Override
+		public int available() {
+			return buffer.remaining();
+		}
+	}
+}
@@ -0,0 +1,90 @@
+package io.bluestaggo.pds;
+
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.ByteBuffer;
+import java.nio.channels.WritableByteChannel;
+
+// Writes items to a channel. Small values are gathered in a buffer, while array items
+// pass their data to the channel in ByteBuffers without going through a byte[].
+class ChannelDataOutputStream extends DataOutputStream {
+	private static final int BUFFER_SIZE = 8192;
+
+	private final WritableByteChannel channel;
+	private final ByteBuffer buffer;
+
+	ChannelDataOutputStream(WritableByteChannel channel) {
+		this(channel, ByteBuffer.allocateDirect(BUFFER_SIZE));
+	}
+
+	private ChannelDataOutputStream(WritableByteChannel channel, ByteBuffer buffer) {
+		super(new BufferOutputStream(channel, buffer));
+		this.channel = channel;
+		this.buffer = buffer;
+	}
+
+	void writeBuffer(ByteBuffer bytes) throws IOException {
+		flush();
+		written += bytes.remaining();
+		while (bytes.hasRemaining()) {
+			channel.write(bytes);
+		}
+	}
+
+	void writeChunks(int count, int elementSize, ArrayTransfer.ChunkCopier copier) throws IOException {
+		flush();
+		int perChunk = BUFFER_SIZE / elementSize;
+		for (int i = 0; i < count; i += perChunk) {
+			int n = Math.min(perChunk, count - i);
+			buffer.clear().limit(n * elementSize);
+			copier.copy(buffer, i, n);
+			buffer.limit(n * elementSize).position(0);
+			while (buffer.hasRemaining()) {
+				channel.write(buffer);
+			}
+		}
+		buffer.clear();
+		written += (long) count * elementSize;
+	}
+
+	private static class BufferOutputStream extends OutputStream {
+		private final WritableByteChannel channel;
+		private final ByteBuffer buffer;
+
+		private BufferOutputStream(WritableByteChannel channel, ByteBuffer buffer) {
+			this.channel = channel;
+			this.buffer = buffer;
+		}
+
+		@Override
+		public void write(int b) throws IOException {
+			if (!buffer.hasRemaining()) {
+				flush();
+			}
+			buffer.put((byte) b);
+		}
+
+		@Override
+		public void write(byte[] b, int off, int len) throws IOException {
+			while (len > 0) {
+				if (!buffer.hasRemaining()) {
+					flush();
+				}
+				int n = Math.min(len, buffer.remaining());
+				buffer.put(b, off, n);
+				off += n;
+				len -= n;
+			}
+		}
+
+		@Override
+		public void flush() throws IOException {
+			buffer.flip();
+			while (buffer.hasRemaining()) {
+				channel.write(buffer);
+			}
+			buffer.clear();
+		}
+	}
+}
@@ -1,45 +1,49 @@
 package io.bluestaggo.pds;
 
-import java.io.DataInputStream;
-import java.io.DataOutputStream;
-import java.io.IOException;
 import java.nio.ByteBuffer;
+import java.nio.IntBuffer;
 
-public class IntArrayItem extends StructureItem {
-	public int[] value;
-
+public class IntArrayItem extends PrimitiveArrayItem<int[]> {
 	public IntArrayItem() {
+		super(4, "ints");
 	}
 
 	public IntArrayItem(int[] value) {
-		this.value = value;
+		super(4, "ints", value);
+	}
+
+	public IntArrayItem(ByteBuffer view) {
+		super(4, "ints", view);
 	}
 
 	@Override
 	public int[] getIntArray() {
-		return value;
+		return array();
+	}
+
+	// Reads the values in place, without copying a view out into an array
+	public IntBuffer getIntBuffer() {
+		ByteBuffer view = view();
+		return view != null ? view.asIntBuffer().asReadOnlyBuffer() : IntBuffer.wrap(value);
 	}
 
 	@Override
-	public String toString() {
-		return "<" + value.length + " ints>";
+	int[] newArray(int length) {
+		return new int[length];
 	}
 
 	@Override
-	protected void read(DataInputStream stream) throws IOException {
-		int length = stream.readInt();
-		value = new int[length / 4];
-		byte[] bytes = stream.readNBytes(length);
-		ByteBuffer buffer = ByteBuffer.wrap(bytes);
-		buffer.asIntBuffer().get(value);
+	int length(int[] array) {
+		return array.length;
 	}
 
 	@Override
-	protected void write(DataOutputStream stream) throws IOException {
-		ByteBuffer buffer = ByteBuffer.allocate(value.length * 4);
-		buffer.asIntBuffer().put(value);
+	void get(ByteBuffer bytes, int[] array, int index, int count) {
+		bytes.asIntBuffer().get(array, index, count);
+	}
 
-		stream.writeInt(value.length * 4);
-		stream.write(buffer.array());
+	@Override
+	void put(ByteBuffer bytes, int[] array, int index, int count) {
+		bytes.asIntBuffer().put(array, index, count);
 	}
 }
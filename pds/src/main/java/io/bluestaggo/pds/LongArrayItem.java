@@ -1,45 +1,49 @@
 package io.bluestaggo.pds;
 
-import java.io.DataInputStream;
-import java.io.DataOutputStream;
-import java.io.IOException;
 import java.nio.ByteBuffer;
+import java.nio.LongBuffer;
 
-public class LongArrayItem extends StructureItem {
-	public long[] value;
-
+public class LongArrayItem extends PrimitiveArrayItem<long[]> {
 	public LongArrayItem() {
+		super(8, "longs");
 	}
 
 	public LongArrayItem(long[] value) {
-		this.value = value;
+		super(8, "longs", value);
+	}
+
+	public LongArrayItem(ByteBuffer view) {
+		super(8, "longs", view);
 	}
 
 	@Override
 	public long[] getLongArray() {
-		return value;
+		return array();
+	}
+
+	// Reads the values in place, without copying a view out into an array
+	public LongBuffer getLongBuffer() {
+		ByteBuffer view = view();
+		return view != null ? view.asLongBuffer().asReadOnlyBuffer() : LongBuffer.wrap(value);
 	}
 
 	@Override
-	public String toString() {
-		return "<" + value.length + " longs>";
+	long[] newArray(int length) {
+		return new long[length];
 	}
 
 	@Override
-	protected void read(DataInputStream stream) throws IOException {
-		int length = stream.readInt();
-		value = new long[length / 8];
-		byte[] bytes = stream.readNBytes(length);
-		ByteBuffer buffer = ByteBuffer.wrap(bytes);
-		buffer.asLongBuffer().get(value);
+	int length(long[] array) {
+		return array.length;
 	}
 
 	@Override
-	protected void write(DataOutputStream stream) throws IOException {
-		ByteBuffer buffer = ByteBuffer.allocate(value.length * 8);
-		buffer.asLongBuffer().put(value);
+	void get(ByteBuffer bytes, long[] array, int index, int count) {
+		bytes.asLongBuffer().get(array, index, count);
+	}
 
-		stream.writeInt(value.length * 8);
-		stream.write(buffer.array());
+	@Override
+	void put(ByteBuffer bytes, long[] array, int index, int count) {
+		bytes.asLongBuffer().put(array, index, count);
 	}
 }
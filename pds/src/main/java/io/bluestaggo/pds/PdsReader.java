@@ -0,0 +1,271 @@
+package io.bluestaggo.pds;
+
+import java.io.BufferedInputStream;
+import java.io.ByteArrayInputStream;
+import java.io.Closeable;
+import java.io.DataInputStream;
+import java.io.EOFException;
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.Arrays;
+
+// Pull parser over the same format StructureItem reads, without building a tree of items.
+// Call nextType() to look at the next value, nextName() for its key inside a compound, then one of the
+// read, enter or skip methods to consume it. nextType() returns TYPE_END once a list or compound has no
+// entries left, or at the end of the stream at the top level; exit() then leaves the list or compound.
+public class PdsReader implements Closeable {
+	private final DataInputStream stream;
+
+	// Entries left in each open list or compound, with depth 0 standing for the top level
+	private int[] remaining = new int[8];
+	private boolean[] compound = new boolean[8];
+	private int depth;
+
+	private int pendingType = -1;
+	private String pendingName;
+
+	public PdsReader(InputStream stream) {
+		this.stream = new DataInputStream(stream instanceof ByteArrayInputStream || stream instanceof BufferedInputStream
+				? stream : new BufferedInputStream(stream));
+	}
+
+	public PdsReader(byte[] bytes) {
+		this(new ByteArrayInputStream(bytes));
+	}
+
+	public int getDepth() {
+		return depth;
+	}
+
+	public int nextType() throws IOException {
+		if (pendingType != -1) {
+			return pendingType;
+		}
+
+		if (depth > 0 && remaining[depth] == 0) {
+			return StructureItem.TYPE_END;
+		}
+
+		if (depth > 0 && compound[depth]) {
+			pendingName = StructureItem.readString(stream);
+		}
+
+		int type = stream.read();
+		if (type == -1) {
+			if (depth > 0) {
+				throw new EOFException("Stream ended inside a list or compound");
+			}
+			return StructureItem.TYPE_END;
+		}
+		if (type == StructureItem.TYPE_END || type > StructureItem.TYPE_COMPOUND) {
+			throw new IOException("Unknown item type " + type);
+		}
+
+		pendingType = type;
+		return type;
+	}
+
+	// Key of the next value in the current compound
+	public String nextName() throws IOException {
+		if (depth == 0 || !compound[depth]) {
+			throw new IllegalStateException("Only compound entries have names");
+		}
+		if (nextType() == StructureItem.TYPE_END) {
+			throw new IllegalStateException("No entries left in compound");
+		}
+		return pendingName;
+	}
+
+	private void consume(int expectedType) throws IOException {
+		int type = nextType();
+		if (type != expectedType) {
+			throw new IOException("Expected " + typeName(expectedType) + " but found " + typeName(type));
+		}
+
+		pendingType = -1;
+		pendingName = null;
+		if (depth > 0) {
+			remaining[depth]--;
+		}
+	}
+
+	private static String typeName(int type) {
+		return switch (type) {
+			case StructureItem.TYPE_END -> "end";
+			case StructureItem.TYPE_BYTE -> "byte";
+			case StructureItem.TYPE_SHORT -> "short";
+			case StructureItem.TYPE_INT -> "int";
+			case StructureItem.TYPE_LONG -> "long";
+			case StructureItem.TYPE_FLOAT -> "float";
+			case StructureItem.TYPE_DOUBLE -> "double";
+			case StructureItem.TYPE_BYTE_ARRAY -> "byte[]";
+			case StructureItem.TYPE_SHORT_ARRAY -> "short[]";
+			case StructureItem.TYPE_INT_ARRAY -> "int[]";
+			case StructureItem.TYPE_LONG_ARRAY -> "long[]";
+			case StructureItem.TYPE_STRING -> "String";
+			case StructureItem.TYPE_LIST -> "List";
+			case StructureItem.TYPE_COMPOUND -> "Compound";
+			default -> "type " + type;
+		};
+	}
+
+	public byte readByte() throws IOException {
+		consume(StructureItem.TYPE_BYTE);
+		return stream.readByte();
+	}
+
+	public short readShort() throws IOException {
+		consume(StructureItem.TYPE_SHORT);
+		return stream.readShort();
+	}
+
+	public int readInt() throws IOException {
+		consume(StructureItem.TYPE_INT);
+		return stream.readInt();
+	}
+
+	public long readLong() throws IOException {
+		consume(StructureItem.TYPE_LONG);
+		return stream.readLong();
+	}
+
+	public float readFloat() throws IOException {
+		consume(StructureItem.TYPE_FLOAT);
+		return stream.readFloat();
+	}
+
+	public double readDouble() throws IOException {
+		consume(StructureItem.TYPE_DOUBLE);
+		return stream.readDouble();
+	}
+
+	public String readString() throws IOException {
+		consume(StructureItem.TYPE_STRING);
+		return StructureItem.readString(stream);
+	}
+
+	public byte[] readByteArray() throws IOException {
+		consume(StructureItem.TYPE_BYTE_ARRAY);
+		int length = stream.readInt();
+		byte[] value = new byte[length];
+		stream.readFully(value);
+		return value;
+	}
+
+	// Reads a byte array into a caller's buffer, returning its length; fails if the buffer is too small
+	public int readByteArray(byte[] buffer) throws IOException {
+		consume(StructureItem.TYPE_BYTE_ARRAY);
+		int length = stream.readInt();
+		if (length > buffer.length) {
+			throw new IOException("Byte array of " + length + " bytes does not fit in a buffer of " + buffer.length);
+		}
+		stream.readFully(buffer, 0, length);
+		return length;
+	}
+
+	public short[] readShortArray() throws IOException {
+		consume(StructureItem.TYPE_SHORT_ARRAY);
+		int length = stream.readInt();
+		short[] value = new short[length / 2];
+		ArrayTransfer.read(stream, value.length, 2, (chunk, index, count) -> chunk.asShortBuffer().get(value, index, count));
+		stream.skipNBytes(length % 2);
+		return value;
+	}
+
+	public int[] readIntArray() throws IOException {
+		consume(StructureItem.TYPE_INT_ARRAY);
+		int length = stream.readInt();
+		int[] value = new int[length / 4];
+		ArrayTransfer.read(stream, value.length, 4, (chunk, index, count) -> chunk.asIntBuffer().get(value, index, count));
+		stream.skipNBytes(length % 4);
+		return value;
+	}
+
+	public long[] readLongArray() throws IOException {
+		consume(StructureItem.TYPE_LONG_ARRAY);
+		int length = stream.readInt();
+		long[] value = new long[length / 8];
+		ArrayTransfer.read(stream, value.length, 8, (chunk, index, count) -> chunk.asLongBuffer().get(value, index, count));
+		stream.skipNBytes(length % 8);
+		return value;
+	}
+
+	// Builds the next value as an item tree, for parts of a stream that are easier to handle that way
+	public StructureItem readItem() throws IOException {
+		int type = nextType();
+		consume(type);
+		return StructureItem.readPayload(type, stream);
+	}
+
+	public int enterList() throws IOException {
+		consume(StructureItem.TYPE_LIST);
+		return push(false, stream.readInt());
+	}
+
+	public int enterCompound() throws IOException {
+		consume(StructureItem.TYPE_COMPOUND);
+		return push(true, stream.readInt());
+	}
+
+	// Skips whatever is left of the current list or compound and leaves it
+	public void exit() throws IOException {
+		if (depth == 0) {
+			throw new IllegalStateException("Not inside a list or compound");
+		}
+
+		while (nextType() != StructureItem.TYPE_END) {
+			skip();
+		}
+		depth--;
+	}
+
+	// Skips the next value, nested lists and compounds included, without recursing
+	public void skip() throws IOException {
+		int startDepth = depth;
+		do {
+			int type = nextType();
+			if (type == StructureItem.TYPE_END) {
+				if (depth == startDepth) {
+					throw new IllegalStateException("No value to skip");
+				}
+				depth--;
+				continue;
+			}
+
+			switch (type) {
+				case StructureItem.TYPE_LIST -> enterList();
+				case StructureItem.TYPE_COMPOUND -> enterCompound();
+				default -> {
+					consume(type);
+					stream.skipNBytes(switch (type) {
+						case StructureItem.TYPE_BYTE -> 1;
+						case StructureItem.TYPE_SHORT -> 2;
+						case StructureItem.TYPE_INT, StructureItem.TYPE_FLOAT -> 4;
+						case StructureItem.TYPE_LONG, StructureItem.TYPE_DOUBLE -> 8;
+						case StructureItem.TYPE_STRING -> stream.readUnsignedShort();
+						default -> stream.readInt();
+					});
+				}
+			}
+		} while (depth > startDepth);
+	}
+
+	private int push(boolean isCompound, int count) throws IOException {
+		if (count < 0) {
+			throw new IOException("Negative entry count " + count);
+		}
+
+		if (++depth == remaining.length) {
+			remaining = Arrays.copyOf(remaining, depth * 2);
+			compound = Arrays.copyOf(compound, depth * 2);
+		}
+		remaining[depth] = count;
+		compound[depth] = isCompound;
+		return count;
+	}
+
+	@Override
+	public void close() throws IOException {
+		stream.close();
+	}
+}
@@ -0,0 +1,183 @@
+package io.bluestaggo.pds;
+
+import java.io.BufferedOutputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.Closeable;
+import java.io.DataOutputStream;
+import java.io.Flushable;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.util.Arrays;
+
+// Writes the same format as StructureItem straight to a stream, without building items first.
+// Lists and compounds are given their entry count up front, as the format stores it before the entries;
+// inside a compound every value is preceded by name(). end() checks that the declared count was written.
+public class PdsWriter implements Closeable, Flushable {
+	private final DataOutputStream stream;
+
+	private int[] remaining = new int[8];
+	private boolean[] compound = new boolean[8];
+	private int depth;
+	private boolean named;
+
+	public PdsWriter(OutputStream stream) {
+		this.stream = new DataOutputStream(stream instanceof ByteArrayOutputStream || stream instanceof BufferedOutputStream
+				? stream : new BufferedOutputStream(stream));
+	}
+
+	public PdsWriter name(String name) throws IOException {
+		if (depth == 0 || !compound[depth]) {
+			throw new IllegalStateException("Only compound entries have names");
+		}
+		if (named) {
+			throw new IllegalStateException("Entry already has a name");
+		}
+
+		StructureItem.writeString(name, stream);
+		named = true;
+		return this;
+	}
+
+	private void begin(int type) throws IOException {
+		if (depth > 0) {
+			if (remaining[depth] == 0) {
+				throw new IllegalStateException("More entries written than declared");
+			}
+			if (compound[depth] && !named) {
+				throw new IllegalStateException("Compound entry written without a name");
+			}
+			remaining[depth]--;
+			named = false;
+		}
+
+		stream.write(type);
+	}
+
+	public PdsWriter writeByte(int value) throws IOException {
+		begin(StructureItem.TYPE_BYTE);
+		stream.writeByte(value);
+		return this;
+	}
+
+	public PdsWriter writeShort(int value) throws IOException {
+		begin(StructureItem.TYPE_SHORT);
+		stream.writeShort(value);
+		return this;
+	}
+
+	public PdsWriter writeInt(int value) throws IOException {
+		begin(StructureItem.TYPE_INT);
+		stream.writeInt(value);
+		return this;
+	}
+
+	public PdsWriter writeLong(long value) throws IOException {
+		begin(StructureItem.TYPE_LONG);
+		stream.writeLong(value);
+		return this;
+	}
+
+	public PdsWriter writeFloat(float value) throws IOException {
+		begin(StructureItem.TYPE_FLOAT);
+		stream.writeFloat(value);
+		return this;
+	}
+
+	public PdsWriter writeDouble(double value) throws IOException {
+		begin(StructureItem.TYPE_DOUBLE);
+		stream.writeDouble(value);
+		return this;
+	}
+
+	public PdsWriter writeString(String value) throws IOException {
+		begin(StructureItem.TYPE_STRING);
+		StructureItem.writeString(value, stream);
+		return this;
+	}
+
+	public PdsWriter writeByteArray(byte[] value) throws IOException {
+		return writeByteArray(value, 0, value.length);
+	}
+
+	public PdsWriter writeByteArray(byte[] value, int offset, int length) throws IOException {
+		begin(StructureItem.TYPE_BYTE_ARRAY);
+		stream.writeInt(length);
+		stream.write(value, offset, length);
+		return this;
+	}
+
+	public PdsWriter writeShortArray(short[] value) throws IOException {
+		begin(StructureItem.TYPE_SHORT_ARRAY);
+		stream.writeInt(value.length * 2);
+		ArrayTransfer.write(stream, value.length, 2, (chunk, index, count) -> chunk.asShortBuffer().put(value, index, count));
+		return this;
+	}
+
+	public PdsWriter writeIntArray(int[] value) throws IOException {
+		begin(StructureItem.TYPE_INT_ARRAY);
+		stream.writeInt(value.length * 4);
+		ArrayTransfer.write(stream, value.length, 4, (chunk, index, count) -> chunk.asIntBuffer().put(value, index, count));
+		return this;
+	}
+
+	public PdsWriter writeLongArray(long[] value) throws IOException {
+		begin(StructureItem.TYPE_LONG_ARRAY);
+		stream.writeInt(value.length * 8);
+		ArrayTransfer.write(stream, value.length, 8, (chunk, index, count) -> chunk.asLongBuffer().put(value, index, count));
+		return this;
+	}
+
+	public PdsWriter writeItem(StructureItem item) throws IOException {
+		begin(item.getType());
+		item.write(stream);
+		return this;
+	}
+
+	public PdsWriter beginList(int count) throws IOException {
+		begin(StructureItem.TYPE_LIST);
+		stream.writeInt(count);
+		return push(false, count);
+	}
+
+	public PdsWriter beginCompound(int count) throws IOException {
+		begin(StructureItem.TYPE_COMPOUND);
+		stream.writeInt(count);
+		return push(true, count);
+	}
+
+	public PdsWriter end() {
+		if (depth == 0) {
+			throw new IllegalStateException("Not inside a list or compound");
+		}
+		if (remaining[depth] != 0) {
+			throw new IllegalStateException(remaining[depth] + " declared entries were not written");
+		}
+
+		depth--;
+		return this;
+	}
+
+	private PdsWriter push(boolean isCompound, int count) {
+		if (count < 0) {
+			throw new IllegalArgumentException("Negative entry count " + count);
+		}
+
+		if (++depth == remaining.length) {
+			remaining = Arrays.copyOf(remaining, depth * 2);
+			compound = Arrays.copyOf(compound, depth * 2);
+		}
+		remaining[depth] = count;
+		compound[depth] = isCompound;
+		return this;
+	}
+
+	@Override
+	public void flush() throws IOException {
+		stream.flush();
+	}
+
+	@Override
+	public void close() throws IOException {
+		stream.close();
+	}
+}
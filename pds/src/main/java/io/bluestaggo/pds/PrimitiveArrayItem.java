@@ -0,0 +1,109 @@
+package io.bluestaggo.pds;
+
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+
+// Shared by the short, int and long array items. The values are either held in an array, or read through
+// a view of big-endian bytes when the item was read with StructureItem.readItemView or mapItem.
+abstract class PrimitiveArrayItem<A> extends StructureItem {
+	// Null while the item is a view, until the array getter copies it out; use that getter rather than
+	// reading the field when the item might have been read as a view
+	public A value;
+	// Big-endian bytes this item reads through when read as a view, such as part of a mapped file
+	private ByteBuffer view;
+
+	private final int elementSize;
+	private final String elementName;
+
+	PrimitiveArrayItem(int elementSize, String elementName) {
+		this.elementSize = elementSize;
+		this.elementName = elementName;
+	}
+
+	PrimitiveArrayItem(int elementSize, String elementName, A value) {
+		this(elementSize, elementName);
+		this.value = value;
+	}
+
+	PrimitiveArrayItem(int elementSize, String elementName, ByteBuffer view) {
+		this(elementSize, elementName);
+		this.view = view.slice(view.position(), view.remaining() - view.remaining() % elementSize).order(ByteOrder.BIG_ENDIAN);
+	}
+
+	abstract A newArray(int length);
+
+	abstract int length(A array);
+
+	// Copies count elements from the start of the bytes into the array, starting at index
+	abstract void get(ByteBuffer bytes, A array, int index, int count);
+
+	// Copies count elements of the array, starting at index, to the start of the bytes
+	abstract void put(ByteBuffer bytes, A array, int index, int count);
+
+	public boolean isView() {
+		return view != null;
+	}
+
+	// The view's bytes, or null once the item holds an array
+	ByteBuffer view() {
+		return view;
+	}
+
+	A array() {
+		if (value == null && view != null) {
+			A array = newArray(view.remaining() / elementSize);
+			get(view, array, 0, length(array));
+			value = array;
+			view = null;
+		}
+		return value;
+	}
+
+	private int length() {
+		return view != null ? view.remaining() / elementSize : length(value);
+	}
+
+	@Override
+	public String toString() {
+		return "<" + length() + " " + elementName + ">";
+	}
+
+	@Override
+	protected void read(DataInputStream stream) throws IOException {
+		int length = stream.readInt();
+		int padding = length % elementSize;
+		if (stream instanceof BufferDataInputStream bufferStream) {
+			ByteBuffer bytes = bufferStream.take(length - padding);
+			if (bufferStream.views) {
+				value = null;
+				view = bytes;
+			} else {
+				A array = newArray(length / elementSize);
+				get(bytes, array, 0, length(array));
+				value = array;
+			}
+			bufferStream.skipNBytes(padding);
+			return;
+		}
+
+		A array = newArray(length / elementSize);
+		ArrayTransfer.read(stream, length(array), elementSize, (chunk, index, count) -> get(chunk, array, index, count));
+		stream.skipNBytes(padding);
+		value = array;
+		view = null;
+	}
+
+	@Override
+	protected void write(DataOutputStream stream) throws IOException {
+		stream.writeInt(length() * elementSize);
+		if (view != null) {
+			ArrayTransfer.write(stream, view);
+		} else {
+			A array = value;
+			ArrayTransfer.write(stream, length(array), elementSize, (chunk, index, count) -> put(chunk, array, index, count));
+		}
+	}
+}
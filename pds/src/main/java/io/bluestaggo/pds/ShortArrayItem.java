@@ -1,45 +1,49 @@
 package io.bluestaggo.pds;
 
-import java.io.DataInputStream;
-import java.io.DataOutputStream;
-import java.io.IOException;
 import java.nio.ByteBuffer;
+import java.nio.ShortBuffer;
 
-public class ShortArrayItem extends StructureItem {
-	public short[] value;
-
+public class ShortArrayItem extends PrimitiveArrayItem<short[]> {
 	public ShortArrayItem() {
+		super(2, "shorts");
 	}
 
 	public ShortArrayItem(short[] value) {
-		this.value = value;
+		super(2, "shorts", value);
+	}
+
+	public ShortArrayItem(ByteBuffer view) {
+		super(2, "shorts", view);
 	}
 
 	@Override
 	public short[] getShortArray() {
-		return value;
+		return array();
+	}
+
+	// Reads the values in place, without copying a view out into an array
+	public ShortBuffer getShortBuffer() {
+		ByteBuffer view = view();
+		return view != null ? view.asShortBuffer().asReadOnlyBuffer() : ShortBuffer.wrap(value);
 	}
 
 	@Override
-	public String toString() {
-		return "<" + value.length + " shorts>";
+	short[] newArray(int length) {
+		return new short[length];
 	}
 
 	@Override
-	protected void read(DataInputStream stream) throws IOException {
-		int length = stream.readInt();
-		value = new short[length / 2];
-		byte[] bytes = stream.readNBytes(length);
-		ByteBuffer buffer = ByteBuffer.wrap(bytes);
-		buffer.asShortBuffer().get(value);
+	int length(short[] array) {
+		return array.length;
 	}
 
 	@Override
-	protected void write(DataOutputStream stream) throws IOException {
-		ByteBuffer buffer = ByteBuffer.allocate(value.length * 2);
-		buffer.asShortBuffer().put(value);
+	void get(ByteBuffer bytes, short[] array, int index, int count) {
+		bytes.asShortBuffer().get(array, index, count);
+	}
 
-		stream.writeInt(value.length * 2);
-		stream.write(buffer.array());
+	@Override
+	void put(ByteBuffer bytes, short[] array, int index, int count) {
+		bytes.asShortBuffer().put(array, index, count);
 	}
 }
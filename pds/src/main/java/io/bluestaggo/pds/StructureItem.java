@@ -3,27 +3,65 @@ package io.bluestaggo.pds;
 import java.io.DataInputStream;
 import java.io.DataOutputStream;
 import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.channels.WritableByteChannel;
 import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
 import java.util.List;
 import java.util.Map;
+import java.util.function.Supplier;
 
 public abstract class StructureItem {
-	private static final List<Class<? extends StructureItem>> REGISTERED_TYPES = List.of(
-			ByteItem.class,
-			ShortItem.class,
-			IntItem.class,
-			LongItem.class,
-			FloatItem.class,
-			DoubleItem.class,
-			ByteArrayItem.class,
-			ShortArrayItem.class,
-			IntArrayItem.class,
-			LongArrayItem.class,
-			StringItem.class,
-			ListItem.class,
-			CompoundItem.class
+	// Type bytes written before every item, in the same order as REGISTERED_TYPES
+	public static final int TYPE_END = 0;
+	public static final int TYPE_BYTE = 1;
+	public static final int TYPE_SHORT = 2;
+	public static final int TYPE_INT = 3;
+	public static final int TYPE_LONG = 4;
+	public static final int TYPE_FLOAT = 5;
+	public static final int TYPE_DOUBLE = 6;
+	public static final int TYPE_BYTE_ARRAY = 7;
+	public static final int TYPE_SHORT_ARRAY = 8;
+	public static final int TYPE_INT_ARRAY = 9;
+	public static final int TYPE_LONG_ARRAY = 10;
+	public static final int TYPE_STRING = 11;
+	public static final int TYPE_LIST = 12;
+	public static final int TYPE_COMPOUND = 13;
+
+	private record ItemType(Class<? extends StructureItem> itemClass, Supplier<StructureItem> factory) {
+	}
+
+	private static final List<ItemType> REGISTERED_TYPES = List.of(
+			new ItemType(ByteItem.class, ByteItem::new),
+			new ItemType(ShortItem.class, ShortItem::new),
+			new ItemType(IntItem.class, IntItem::new),
+			new ItemType(LongItem.class, LongItem::new),
+			new ItemType(FloatItem.class, FloatItem::new),
+			new ItemType(DoubleItem.class, DoubleItem::new),
+			new ItemType(ByteArrayItem.class, ByteArrayItem::new),
+			new ItemType(ShortArrayItem.class, ShortArrayItem::new),
+			new ItemType(IntArrayItem.class, IntArrayItem::new),
+			new ItemType(LongArrayItem.class, LongArrayItem::new),
+			new ItemType(StringItem.class, StringItem::new),
+			new ItemType(ListItem.class, ListItem::new),
+			new ItemType(CompoundItem.class, CompoundItem::new)
 	);
 
+	// Type byte of each item class, looked up once instead of searching REGISTERED_TYPES on every write
+	private static final ClassValue<Integer> TYPE_IDS = new ClassValue<>() {
+		@Override
+		protected Integer computeValue(Class<?> itemClass) {
+			for (int i = 0; i < REGISTERED_TYPES.size(); i++) {
+				if (REGISTERED_TYPES.get(i).itemClass() == itemClass) {
+					return i + 1;
+				}
+			}
+			return TYPE_END;
+		}
+	};
+
 	protected static String readString(DataInputStream stream) throws IOException {
 		int length = stream.readUnsignedShort();
 		byte[] bytes = stream.readNBytes(length);
@@ -114,7 +152,7 @@ public abstract class StructureItem {
 	}
 
 	public int getType() {
-		return REGISTERED_TYPES.indexOf(getClass()) + 1;
+		return TYPE_IDS.get(getClass());
 	}
 
 	protected abstract void read(DataInputStream stream) throws IOException;
@@ -122,23 +160,37 @@ public abstract class StructureItem {
 	protected abstract void write(DataOutputStream stream) throws IOException;
 
 	public static StructureItem readItem(DataInputStream stream) throws IOException {
-		int type = stream.readUnsignedByte();
+		return readPayload(stream.readUnsignedByte(), stream);
+	}
 
+	// Reads the rest of an item whose type byte has already been read
+	static StructureItem readPayload(int type, DataInputStream stream) throws IOException {
 		if (type == 0 || type > REGISTERED_TYPES.size()) {
 			return null;
 		}
 
-		try {
-			StructureItem item = REGISTERED_TYPES.get(type - 1).getDeclaredConstructor().newInstance();
-			item.read(stream);
-			return item;
-		} catch (NoSuchMethodException
-				| InstantiationException
-				| IllegalAccessException
-				| IllegalArgumentException
-				| java.lang.reflect.InvocationTargetException e) {
-			e.printStackTrace();
-			return null;
+		StructureItem item = REGISTERED_TYPES.get(type - 1).factory().get();
+		item.read(stream);
+		return item;
+	}
+
+	// Reads an item from the buffer's position onwards, leaving the position after it
+	public static StructureItem readItem(ByteBuffer buffer) throws IOException {
+		return readItem(new BufferDataInputStream(buffer, false));
+	}
+
+	// Like readItem(ByteBuffer), except short, int and long arrays become views of the buffer instead of copies.
+	// The buffer must stay unchanged for as long as the items are in use. Their value fields stay null until
+	// getShortArray(), getIntArray() or getLongArray() copies the view out, so read them through those instead.
+	public static StructureItem readItemView(ByteBuffer buffer) throws IOException {
+		return readItem(new BufferDataInputStream(buffer, true));
+	}
+
+	// Maps the file read-only and reads the item in it as views, so large arrays are paged in as they are read.
+	// As with readItemView, array items leave their value fields null until their array getters are called.
+	public static StructureItem mapItem(Path path) throws IOException {
+		try (FileChannel channel = FileChannel.open(path, StandardOpenOption.READ)) {
+			return readItemView(channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size()));
 		}
 	}
 
@@ -146,4 +198,11 @@ public abstract class StructureItem {
 		stream.write(item.getType());
 		item.write(stream);
 	}
+
+	// Writes an item to a channel, with arrays going to it without a stream in between
+	public static void writeItem(StructureItem item, WritableByteChannel channel) throws IOException {
+		DataOutputStream stream = new ChannelDataOutputStream(channel);
+		writeItem(item, stream);
+		stream.flush();
+	}
 }
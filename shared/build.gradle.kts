@@ -1,5 +1,7 @@
 plugins {
     java
+    // Benchmarks in src/jmh, run with ./gradlew :shared:jmh
+    id("me.champeau.jmh") version "0.7.2"
 }
 
 val jomlVersion = "1.10.5"
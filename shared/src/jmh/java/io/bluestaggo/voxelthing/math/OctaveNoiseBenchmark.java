@@ -0,0 +1,78 @@
+package io.bluestaggo.voxelthing.math;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.concurrent.TimeUnit;
+
+// One chunk's worth of octave noise, sampled point by point through the scalar calls and in one grid call.
+// The 2D grid is a heightmap layer, the 3D grid the cave density lattice, both as the generator samples them.
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class OctaveNoiseBenchmark {
+	private static final int LENGTH_2D = 32;
+	private static final double SCALE_2D = 275.0;
+
+	private static final int LENGTH_3D = 9;
+	private static final int STEP_3D = 4;
+	private static final double SCALE_XZ = 100.0;
+	private static final double SCALE_Y = 50.0;
+
+	@Param({"1", "4"})
+	public int octaves;
+
+	// Not final, so the JIT cannot fold them into constants
+	private long seed = 0x5EEDL;
+	private int x0 = 1024, y0 = -64, z0 = -2048;
+	private final float[] out2D = new float[LENGTH_2D * LENGTH_2D];
+	private final float[] out3D = new float[LENGTH_3D * LENGTH_3D * LENGTH_3D];
+
+	@Benchmark
+	public float[] noise2Scalar() {
+		for (int j = 0; j < LENGTH_2D; j++) {
+			for (int i = 0; i < LENGTH_2D; i++) {
+				out2D[i + j * LENGTH_2D] = OpenSimplex2Octaves.noise2(seed, octaves,
+						(x0 + i) / SCALE_2D, (z0 + j) / SCALE_2D);
+			}
+		}
+		return out2D;
+	}
+
+	@Benchmark
+	public float[] noise2Grid() {
+		OpenSimplex2Octaves.noise2Grid(seed, octaves, x0, z0, 1, SCALE_2D, LENGTH_2D, LENGTH_2D, out2D);
+		return out2D;
+	}
+
+	@Benchmark
+	public float[] noise3Scalar() {
+		for (int i = 0; i < LENGTH_3D; i++) {
+			for (int j = 0; j < LENGTH_3D; j++) {
+				for (int k = 0; k < LENGTH_3D; k++) {
+					out3D[MathUtil.index3D(i, j, k, LENGTH_3D)] = OpenSimplex2Octaves.noise3_ImproveXZ(seed, octaves,
+							(x0 + i * STEP_3D) / SCALE_XZ, (y0 + j * STEP_3D) / SCALE_Y, (z0 + k * STEP_3D) / SCALE_XZ);
+				}
+			}
+		}
+		return out3D;
+	}
+
+	@Benchmark
+	public float[] noise3Grid() {
+		OpenSimplex2Octaves.noise3Grid_ImproveXZ(seed, octaves, x0, y0, z0, STEP_3D,
+				SCALE_XZ, SCALE_Y, LENGTH_3D, LENGTH_3D, LENGTH_3D, out3D);
+		return out3D;
+	}
+}
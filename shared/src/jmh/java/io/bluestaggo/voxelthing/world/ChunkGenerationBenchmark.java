@@ -0,0 +1,70 @@
+package io.bluestaggo.voxelthing.world;
+
+import io.bluestaggo.voxelthing.world.generation.BlockPlacement;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+// Chunks generated per second at three heights: well below the surface, where whole chunks are stone and caves,
+// through the surface, and above it, where chunks come out empty. The column heightmaps are built during warmup,
+// so this measures the chunk itself. surfaceBounds=false forces every chunk through the per-voxel loop, which is
+// how chunks were generated before the min/max surface early exit, so one run compares both.
+@State(Scope.Thread)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class ChunkGenerationBenchmark {
+	private static final int COLUMNS = 8;
+
+	@Param({"1", "2"})
+	public int worldType;
+
+	@Param({"buried", "surface", "sky"})
+	public String layer;
+
+	@Param({"true", "false"})
+	public boolean surfaceBounds;
+
+	private World world;
+	private int chunkY;
+	private int next;
+	private final List<BlockPlacement> placements = new ArrayList<>();
+
+	@Setup
+	public void setUp() {
+		world = new World(worldType, 1234L);
+		chunkY = switch (layer) {
+			case "buried" -> -4;
+			case "surface" -> 0;
+			case "sky" -> 2;
+			default -> throw new IllegalArgumentException("Unknown layer " + layer);
+		};
+	}
+
+	@TearDown
+	public void tearDown() {
+		world.close();
+	}
+
+	@Benchmark
+	public Chunk generateChunk() {
+		int i = next++ & COLUMNS * COLUMNS - 1;
+		placements.clear();
+		return world.generateChunk(i % COLUMNS, chunkY, i / COLUMNS, placements, surfaceBounds);
+	}
+}
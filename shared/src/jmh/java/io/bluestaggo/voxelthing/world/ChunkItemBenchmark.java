@@ -0,0 +1,68 @@
+package io.bluestaggo.voxelthing.world;
+
+import io.bluestaggo.pds.StructureItem;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.concurrent.TimeUnit;
+
+// Reading and writing the item tree of a typical chunk: a surface chunk, with its palette list of identifier
+// compounds and its compressed block array. This is the path that goes through the type registry per item.
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class ChunkItemBenchmark {
+	private World world;
+	private StructureItem item;
+	private byte[] bytes;
+	private final ByteArrayOutputStream output = new ByteArrayOutputStream();
+
+	@Setup
+	public void setUp() throws IOException {
+		world = new World(1, 1234L);
+		item = world.generateChunk(0, 0, 0, new ArrayList<>()).serialize();
+
+		StructureItem.writeItem(item, new DataOutputStream(output));
+		bytes = output.toByteArray();
+	}
+
+	@TearDown
+	public void tearDown() {
+		world.close();
+	}
+
+	@Benchmark
+	public StructureItem readItem() throws IOException {
+		return StructureItem.readItem(new DataInputStream(new ByteArrayInputStream(bytes)));
+	}
+
+	@Benchmark
+	public Chunk readChunk() throws IOException {
+		return Chunk.deserialize(world, 0, 0, 0, readItem());
+	}
+
+	@Benchmark
+	public int writeItem() throws IOException {
+		output.reset();
+		StructureItem.writeItem(item, new DataOutputStream(output));
+		return output.size();
+	}
+}
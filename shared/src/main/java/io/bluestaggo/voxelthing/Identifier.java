@@ -1,9 +1,12 @@
 package io.bluestaggo.voxelthing;
 
 import io.bluestaggo.pds.CompoundItem;
+import io.bluestaggo.pds.PdsReader;
+import io.bluestaggo.pds.PdsWriter;
 import io.bluestaggo.pds.StringItem;
 import io.bluestaggo.pds.StructureItem;
 
+import java.io.IOException;
 import java.util.Objects;
 
 public class Identifier {
@@ -51,4 +54,31 @@ public class Identifier {
 		String name = item.getMap().get("name").getString();
 		return new Identifier(namespace, name);
 	}
+
+	public void write(PdsWriter writer) throws IOException {
+		writer.beginCompound(2)
+				.name("namespace").writeString(namespace)
+				.name("name").writeString(name)
+				.end();
+	}
+
+	public static Identifier read(PdsReader reader) throws IOException {
+		String namespace = null;
+		String name = null;
+
+		reader.enterCompound();
+		while (reader.nextType() != StructureItem.TYPE_END) {
+			switch (reader.nextName()) {
+				case "namespace" -> namespace = reader.readString();
+				case "name" -> name = reader.readString();
+				default -> reader.skip();
+			}
+		}
+		reader.exit();
+
+		if (namespace == null || name == null) {
+			throw new IOException("Identifier is missing its namespace or name");
+		}
+		return new Identifier(namespace, name);
+	}
 }
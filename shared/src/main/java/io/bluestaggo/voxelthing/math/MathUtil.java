@@ -100,4 +100,18 @@ public final class MathUtil {
 	public static double sinPi(double x) {
 		return Math.sin(x * Math.PI);
 	}
+
+	// SplitMix64 finalizer, spreads every input bit across the whole output
+	public static long mix64(long z) {
+		z = (z ^ (z >>> 30)) * 0xbf58476d1ce4e5b9L;
+		z = (z ^ (z >>> 27)) * 0x94d049bb133111ebL;
+		return z ^ z >>> 31;
+	}
+
+	public static long hash(long seed, int x, int y, int z) {
+		long h = mix64(seed + 0x9e3779b97f4a7c15L);
+		h = mix64(h ^ x * 0x632be59bd9b4e019L);
+		h = mix64(h ^ y * 0x8cb92ba72f3d8dd7L);
+		return mix64(h ^ z * 0xd6e8feb86659fd93L);
+	}
 }
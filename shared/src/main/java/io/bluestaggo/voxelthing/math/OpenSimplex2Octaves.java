@@ -1,57 +1,126 @@
 package io.bluestaggo.voxelthing.math;
 
+// Octave sums of OpenSimplex2 noise. Each octave doubles the frequency and halves the amplitude,
+// and the sum is normalized back into the range of a single octave.
 public class OpenSimplex2Octaves {
-	private interface FreqNoiseFunction {
-		float get(long seed, double freq, double... coords);
-	}
-
-	@FunctionalInterface
-	private interface NoiseFunction2 extends FreqNoiseFunction {
-		float get2(long seed, double x, double y);
+	private static final ThreadLocal<double[]> GRID_COORDS = ThreadLocal.withInitial(() -> new double[64]);
 
-		default float get(long seed, double freq, double... coords) {
-			return get2(seed, coords[0] * freq, coords[1] * freq);
+	public static float noise2(long seed, int octaves, double x, double y) {
+		float maxAmp = 0.0F;
+		double amp = 1.0D;
+		double freq = 1;
+		float value = 0;
+		for (int i = 0; i < octaves; i++) {
+			value += OpenSimplex2.noise2(seed, x * freq, y * freq) * amp;
+			maxAmp += amp;
+			amp /= 2.0D;
+			freq *= 2.0D;
 		}
+		return value / maxAmp;
 	}
 
-	@FunctionalInterface
-	private interface NoiseFunction3 extends FreqNoiseFunction {
-		float get3(long seed, double x, double y, double z);
-
-		default float get(long seed, double freq, double... coords) {
-			return get3(seed, coords[0] * freq, coords[1] * freq, coords[2] * freq);
+	public static float noise3_ImproveXZ(long seed, int octaves, double x, double y, double z) {
+		float maxAmp = 0.0F;
+		double amp = 1.0D;
+		double freq = 1;
+		float value = 0;
+		for (int i = 0; i < octaves; i++) {
+			value += OpenSimplex2.noise3_ImproveXZ(seed, x * freq, y * freq, z * freq) * amp;
+			maxAmp += amp;
+			amp /= 2.0D;
+			freq *= 2.0D;
 		}
+		return value / maxAmp;
 	}
 
-	@FunctionalInterface
-	private interface OctaveFunction {
-		float get(long seed, int octaves, double... coords);
+	// Fills out[i + j * width] with noise2 at ((x0 + i * step) / scale, (z0 + j * step) / scale).
+	// The x coordinate of every column at every octave's frequency is worked out once up front, and the
+	// z coordinates once per row, so the inner loop only samples and sums. Every point still sums its
+	// octaves in one go; running the octaves as separate passes over the grid measured slower
+	// (see OctaveNoiseBenchmark). The results match noise2 exactly.
+	public static void noise2Grid(long seed, int octaves, int x0, int z0, int step, double scale,
+	                              int width, int height, float[] out) {
+		double[] coords = gridCoords((width + 1) * octaves);
+		int rowCoords = width * octaves;
+		for (int i = 0; i < width; i++) {
+			scaleOctaves((x0 + i * step) / scale, octaves, coords, i * octaves);
+		}
 
-		static OctaveFunction from(FreqNoiseFunction n) {
-			return ((seed, octaves, coords) -> {
-				float maxAmp = 0.0F;
+		float maxAmp = maxAmp(octaves);
+		for (int j = 0; j < height; j++) {
+			scaleOctaves((z0 + j * step) / scale, octaves, coords, rowCoords);
+			int row = j * width;
+			for (int i = 0; i < width; i++) {
+				int column = i * octaves;
 				double amp = 1.0D;
-				double freq = 1;
 				float value = 0;
-				for (int i = 0; i < octaves; i++) {
-					value += n.get(seed, freq, coords) * amp;
-					maxAmp += amp;
+				for (int o = 0; o < octaves; o++) {
+					value += OpenSimplex2.noise2(seed, coords[column + o], coords[rowCoords + o]) * amp;
 					amp /= 2.0D;
-					freq *= 2.0D;
 				}
-				return value / maxAmp;
-			});
+				out[row + i] = value / maxAmp;
+			}
 		}
 	}
 
-	private static final OctaveFunction OCTAVES_NOISE_2 = OctaveFunction.from((NoiseFunction2) OpenSimplex2::noise2);
-	private static final OctaveFunction OCTAVES_NOISE_3_XZ = OctaveFunction.from((NoiseFunction3) OpenSimplex2::noise3_ImproveXZ);
+	// Fills out[(i * height + j) * depth + k], the layout of MathUtil.index3D, with noise3_ImproveXZ at
+	// ((x0 + i * step) / scaleXZ, (y0 + j * step) / scaleY, (z0 + k * step) / scaleXZ).
+	// Like noise2Grid, the innermost z coordinates are scaled for every octave once up front.
+	public static void noise3Grid_ImproveXZ(long seed, int octaves, int x0, int y0, int z0, int step,
+	                                        double scaleXZ, double scaleY, int width, int height, int depth, float[] out) {
+		double[] coords = gridCoords((depth + 2) * octaves);
+		int xCoords = depth * octaves;
+		int yCoords = xCoords + octaves;
+		for (int k = 0; k < depth; k++) {
+			scaleOctaves((z0 + k * step) / scaleXZ, octaves, coords, k * octaves);
+		}
 
-	public static float noise2(long seed, int octaves, double x, double y) {
-		return OCTAVES_NOISE_2.get(seed, octaves, x, y);
+		float maxAmp = maxAmp(octaves);
+		for (int i = 0; i < width; i++) {
+			scaleOctaves((x0 + i * step) / scaleXZ, octaves, coords, xCoords);
+			for (int j = 0; j < height; j++) {
+				scaleOctaves((y0 + j * step) / scaleY, octaves, coords, yCoords);
+				int row = (i * height + j) * depth;
+				for (int k = 0; k < depth; k++) {
+					int column = k * octaves;
+					double amp = 1.0D;
+					float value = 0;
+					for (int o = 0; o < octaves; o++) {
+						value += OpenSimplex2.noise3_ImproveXZ(seed,
+								coords[xCoords + o], coords[yCoords + o], coords[column + o]) * amp;
+						amp /= 2.0D;
+					}
+					out[row + k] = value / maxAmp;
+				}
+			}
+		}
 	}
 
-	public static float noise3_ImproveXZ(long seed, int octaves, double x, double y, double z) {
-		return OCTAVES_NOISE_3_XZ.get(seed, octaves, x, y, z);
+	private static double[] gridCoords(int length) {
+		double[] coords = GRID_COORDS.get();
+		if (coords.length < length) {
+			coords = new double[length];
+			GRID_COORDS.set(coords);
+		}
+		return coords;
+	}
+
+	// Writes the coordinate at each octave's frequency, multiplied the same way noise2 and noise3_ImproveXZ do
+	private static void scaleOctaves(double coord, int octaves, double[] coords, int offset) {
+		double freq = 1;
+		for (int o = 0; o < octaves; o++) {
+			coords[offset + o] = coord * freq;
+			freq *= 2.0D;
+		}
+	}
+
+	private static float maxAmp(int octaves) {
+		float maxAmp = 0.0F;
+		double amp = 1.0D;
+		for (int o = 0; o < octaves; o++) {
+			maxAmp += amp;
+			amp /= 2.0D;
+		}
+		return maxAmp;
 	}
 }
@@ -49,7 +49,6 @@ public class FloatList {
 	}
 
 	public void clear() {
-		data = new float[DEFAULT_CAPACITY];
 		size = 0;
 	}
 
@@ -0,0 +1,142 @@
+package io.bluestaggo.voxelthing.util;
+
+// Bounded, thread-safe cache keyed by long.
+// Eviction uses the CLOCK algorithm: a hit only sets a reference bit, and the hand sweeps past
+// referenced entries once before evicting them, which approximates LRU without reordering on reads.
+// Callers build missing values outside the lock and store them with putIfAbsent, so other keys are not
+// held up; if another thread raced them to the same key, its value wins and theirs is dropped.
+public class LongClockCache<V> {
+	private final int capacity;
+	private final LongObjectMap<Entry<V>> entries;
+	private final Entry<?>[] clock;
+	private int hand;
+	private int size;
+
+	private long hits;
+	private long misses;
+
+	public LongClockCache(int capacity) {
+		if (capacity <= 0) {
+			throw new IllegalArgumentException("Capacity must be positive");
+		}
+
+		this.capacity = capacity;
+		entries = new LongObjectMap<>(capacity);
+		clock = new Entry<?>[capacity];
+	}
+
+	public synchronized V get(long key) {
+		Entry<V> entry = entries.get(key);
+		if (entry == null) {
+			misses++;
+			return null;
+		}
+
+		entry.referenced = true;
+		hits++;
+		return entry.value;
+	}
+
+	// Returns the value already cached under the key, or stores and returns the given one
+	public synchronized V putIfAbsent(long key, V value) {
+		Entry<V> entry = entries.get(key);
+		if (entry != null) {
+			entry.referenced = true;
+			return entry.value;
+		}
+
+		insert(key, value);
+		return value;
+	}
+
+	public synchronized boolean remove(long key) {
+		Entry<V> entry = entries.remove(key);
+		if (entry == null) {
+			return false;
+		}
+
+		clock[entry.slot] = null;
+		size--;
+		return true;
+	}
+
+	public synchronized void clear() {
+		entries.clear();
+		for (int i = 0; i < capacity; i++) {
+			clock[i] = null;
+		}
+		size = 0;
+		hand = 0;
+	}
+
+	public synchronized int size() {
+		return size;
+	}
+
+	public int getCapacity() {
+		return capacity;
+	}
+
+	public synchronized long getHits() {
+		return hits;
+	}
+
+	public synchronized long getMisses() {
+		return misses;
+	}
+
+	public synchronized void resetStats() {
+		hits = 0;
+		misses = 0;
+	}
+
+	private void insert(long key, V value) {
+		int slot;
+		if (size < capacity) {
+			slot = hand;
+			while (clock[slot] != null) {
+				slot = advance(slot);
+			}
+			size++;
+		} else {
+			slot = evict();
+		}
+
+		Entry<V> entry = new Entry<>(key, value, slot);
+		clock[slot] = entry;
+		entries.put(key, entry);
+		hand = advance(slot);
+	}
+
+	// Sweeps from the hand, giving referenced entries a second chance, and frees the first one that is not
+	private int evict() {
+		while (true) {
+			Entry<?> entry = clock[hand];
+			if (entry.referenced) {
+				entry.referenced = false;
+				hand = advance(hand);
+			} else {
+				entries.remove(entry.key);
+				clock[hand] = null;
+				return hand;
+			}
+		}
+	}
+
+	private int advance(int slot) {
+		return slot + 1 == capacity ? 0 : slot + 1;
+	}
+
+	private static class Entry<V> {
+		private final long key;
+		private final V value;
+		private final int slot;
+		private boolean referenced;
+
+		private Entry(long key, V value, int slot) {
+			this.key = key;
+			this.value = value;
+			this.slot = slot;
+		}
+	}
+}
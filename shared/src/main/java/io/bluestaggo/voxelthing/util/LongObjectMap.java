@@ -0,0 +1,144 @@
+package io.bluestaggo.voxelthing.util;
+
+import java.util.Arrays;
+import java.util.Objects;
+import java.util.function.Consumer;
+
+public class LongObjectMap<V> {
+	private static final int DEFAULT_CAPACITY = 16;
+	private static final int MAX_CAPACITY = 1 << 30;
+
+	private long[] keys;
+	private Object[] values;
+	private int mask;
+	private int size;
+
+	public LongObjectMap() {
+		this(DEFAULT_CAPACITY);
+	}
+
+	public LongObjectMap(int capacity) {
+		allocate(Math.max(Integer.highestOneBit(Math.max(capacity, 1) * 4 - 1), DEFAULT_CAPACITY));
+	}
+
+	public int size() {
+		return size;
+	}
+
+	public boolean isEmpty() {
+		return size == 0;
+	}
+
+	@SuppressWarnings("unchecked")
+	public V get(long key) {
+		for (int i = slot(key); values[i] != null; i = i + 1 & mask) {
+			if (keys[i] == key) {
+				return (V) values[i];
+			}
+		}
+		return null;
+	}
+
+	public boolean containsKey(long key) {
+		return get(key) != null;
+	}
+
+	@SuppressWarnings("unchecked")
+	public V put(long key, V value) {
+		Objects.requireNonNull(value);
+
+		int i = slot(key);
+		for (; values[i] != null; i = i + 1 & mask) {
+			if (keys[i] == key) {
+				V old = (V) values[i];
+				values[i] = value;
+				return old;
+			}
+		}
+
+		keys[i] = key;
+		values[i] = value;
+		if (++size > values.length >> 1) {
+			grow();
+		}
+		return null;
+	}
+
+	@SuppressWarnings("unchecked")
+	public V remove(long key) {
+		for (int i = slot(key); values[i] != null; i = i + 1 & mask) {
+			if (keys[i] == key) {
+				V old = (V) values[i];
+				shiftBack(i);
+				size--;
+				return old;
+			}
+		}
+		return null;
+	}
+
+	public void clear() {
+		Arrays.fill(values, null);
+		size = 0;
+	}
+
+	@SuppressWarnings("unchecked")
+	public void forEachValue(Consumer<? super V> consumer) {
+		for (Object value : values) {
+			if (value != null) {
+				consumer.accept((V) value);
+			}
+		}
+	}
+
+	private int slot(long key) {
+		key *= 0x9e3779b97f4a7c15L;
+		return (int) (key ^ key >>> 32) & mask;
+	}
+
+	// Linear probing without tombstones: pull every displaced entry after the hole back into it
+	private void shiftBack(int gap) {
+		int i = gap;
+		while (true) {
+			i = i + 1 & mask;
+			if (values[i] == null) {
+				break;
+			}
+
+			int home = slot(keys[i]);
+			if ((i - home & mask) >= (i - gap & mask)) {
+				keys[gap] = keys[i];
+				values[gap] = values[i];
+				gap = i;
+			}
+		}
+		values[gap] = null;
+	}
+
+	private void allocate(int capacity) {
+		keys = new long[capacity];
+		values = new Object[capacity];
+		mask = capacity - 1;
+	}
+
+	private void grow() {
+		if (values.length >= MAX_CAPACITY) {
+			throw new OutOfMemoryError("Map capacity of " + MAX_CAPACITY + " exceeded");
+		}
+
+		long[] oldKeys = keys;
+		Object[] oldValues = values;
+		allocate(values.length << 1);
+
+		for (int i = 0; i < oldValues.length; i++) {
+			if (oldValues[i] != null) {
+				int j = slot(oldKeys[i]);
+				while (values[j] != null) {
+					j = j + 1 & mask;
+				}
+				keys[j] = oldKeys[i];
+				values[j] = oldValues[i];
+			}
+		}
+	}
+}
@@ -4,29 +4,69 @@ import io.bluestaggo.voxelthing.util.IntList;
 import io.bluestaggo.voxelthing.world.block.Block;
 import io.bluestaggo.voxelthing.world.storage.ByteBlockStorage;
 import io.bluestaggo.voxelthing.world.storage.NibbleBlockStorage;
+import io.bluestaggo.voxelthing.world.storage.PackedBlockStorage;
 import io.bluestaggo.voxelthing.world.storage.ShortBlockStorage;
+import io.bluestaggo.voxelthing.world.storage.UniformBlockStorage;
 
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
 import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.Collections;
 import java.util.List;
+import java.util.function.BiFunction;
+import java.util.zip.Deflater;
+import java.util.zip.Inflater;
+import java.util.zip.InflaterInputStream;
 
 public abstract class BlockStorage {
-	private static final List<Class<? extends BlockStorage>> REGISTERED_TYPES = List.of(
-			NibbleBlockStorage.class,
-			ByteBlockStorage.class,
-			ShortBlockStorage.class
+	private record StorageType(Class<? extends BlockStorage> storageClass, BiFunction<List<Block>, byte[], BlockStorage> factory) {
+	}
+
+	private static final List<StorageType> REGISTERED_TYPES = List.of(
+			new StorageType(NibbleBlockStorage.class, NibbleBlockStorage::new),
+			new StorageType(ByteBlockStorage.class, ByteBlockStorage::new),
+			new StorageType(ShortBlockStorage.class, ShortBlockStorage::new),
+			new StorageType(UniformBlockStorage.class, UniformBlockStorage::new),
+			new StorageType(PackedBlockStorage.class, PackedBlockStorage::new)
 	);
+	private static final ClassValue<Integer> TYPE_IDS = new ClassValue<>() {
+		@Override
+		protected Integer computeValue(Class<?> storageClass) {
+			for (int i = 0; i < REGISTERED_TYPES.size(); i++) {
+				if (REGISTERED_TYPES.get(i).storageClass() == storageClass) {
+					return i;
+				}
+			}
+			return -1;
+		}
+	};
+	// Not a storage of its own: run-length encoded palette indices behind Deflate, decoded into the smallest storage
+	public static final byte COMPRESSED_TYPE = 5;
+	// Runs take at most four bytes per block they cover: palette IDs fit in three varint bytes, lengths under 128 in one,
+	// and longer runs cover at least as many blocks as they take bytes. Anything that inflates past this is corrupt.
+	private static final int MAX_RUN_BYTES = Chunk.VOLUME * 4;
 
 	private final List<Block> mutablePalette;
 	private final IntList blockCounts = new IntList();
 	public final List<Block> palette;
 
+	// Palette slot + 1 of each block by its numeric ID, 0 if the block isn't in the palette
+	private int[] paletteSlots = new int[Block.REGISTERED_BLOCKS_ORDERED.size()];
+	// Slots freed when their last block was removed, reused before the palette grows
+	private final IntList freeSlots = new IntList();
+
 	public BlockStorage() {
 		this(new ArrayList<>());
 	}
 
+	// Starts from a copy of another storage's palette and counts, so the two can change independently
 	public BlockStorage(BlockStorage storage) {
-		this(storage.mutablePalette);
+		this(new ArrayList<>(storage.mutablePalette));
+		for (int i = 0; i < storage.blockCounts.size(); i++) {
+			blockCounts.set(i, storage.blockCounts.get(i));
+		}
 	}
 
 	public BlockStorage(List<Block> palette) {
@@ -40,6 +80,15 @@ public abstract class BlockStorage {
 		for (int i = 0; i < palette.size(); i++) {
 			blockCounts.set(i, 0);
 		}
+
+		for (int i = palette.size() - 1; i > 0; i--) {
+			Block block = palette.get(i);
+			if (block == null) {
+				freeSlots.add(i);
+			} else {
+				setPaletteSlot(block, i);
+			}
+		}
 	}
 
 	protected abstract int getBlockId(int x, int y, int z);
@@ -51,21 +100,13 @@ public abstract class BlockStorage {
 	protected abstract void setBlockId(int x, int y, int z, int id);
 
 	public void setBlock(int x, int y, int z, Block block) {
-		int index = mutablePalette.indexOf(block);
+		int index = getPaletteIndex(block);
 		if (index == -1) {
 			if (needsExpansion(block)) {
 				throw new OutOfMemoryError("Cannot add \"" + block + "\" to palette: ran out of " + getMaxPaletteSize() + "spaces!");
 			}
 
-			index = mutablePalette.lastIndexOf(null);
-			if (index <= 0) {
-				index = mutablePalette.size();
-				mutablePalette.add(block);
-				blockCounts.add(0);
-			} else {
-				mutablePalette.set(index, block);
-				blockCounts.set(index, 0);
-			}
+			index = addToPalette(block);
 		}
 
 		int oldId = getBlockId(x, y, z);
@@ -74,28 +115,219 @@ public abstract class BlockStorage {
 			blockCounts.set(index, blockCounts.get(index) + 1);
 
 			if (oldId > 0) {
-				blockCounts.set(oldId, blockCounts.get(oldId) - 1);
-				if (blockCounts.get(oldId) <= 0) {
-					mutablePalette.set(oldId, null);
+				int count = blockCounts.get(oldId) - 1;
+				blockCounts.set(oldId, count);
+				if (count <= 0) {
+					removeFromPalette(oldId);
 				}
 			}
 		}
 	}
 
+	public int getPaletteIndex(Block block) {
+		if (block == null) {
+			return 0;
+		}
+
+		int id = block.numericId;
+		return id < paletteSlots.length ? paletteSlots[id] - 1 : -1;
+	}
+
+	private void setPaletteSlot(Block block, int slot) {
+		int id = block.numericId;
+		if (id >= paletteSlots.length) {
+			paletteSlots = Arrays.copyOf(paletteSlots, Math.max(id + 1, Block.REGISTERED_BLOCKS_ORDERED.size()));
+		}
+		paletteSlots[id] = slot + 1;
+	}
+
+	// Palette slot of the block, adding it with a count of zero if it isn't there yet.
+	// Check needsExpansion first, the storage may not have room for another block.
+	public int reservePaletteIndex(Block block) {
+		int index = getPaletteIndex(block);
+		return index != -1 ? index : addToPalette(block);
+	}
+
+	protected int addToPalette(Block block) {
+		int index;
+		if (freeSlots.size() > 0) {
+			index = freeSlots.removeLast();
+			mutablePalette.set(index, block);
+			blockCounts.set(index, 0);
+		} else {
+			index = mutablePalette.size();
+			mutablePalette.add(block);
+			blockCounts.add(0);
+		}
+
+		setPaletteSlot(block, index);
+		return index;
+	}
+
+	private void removeFromPalette(int index) {
+		Block block = mutablePalette.get(index);
+		if (block != null && getPaletteIndex(block) == index) {
+			paletteSlots[block.numericId] = 0;
+		}
+
+		mutablePalette.set(index, null);
+		freeSlots.add(index);
+	}
+
+	protected void setBlockCount(int id, int count) {
+		blockCounts.set(id, count);
+	}
+
+	protected int getBlockCount(int id) {
+		return id < blockCounts.size() ? blockCounts.get(id) : 0;
+	}
+
+	// Copies every block ID from a storage sharing this one's palette, for expanding or re-packing
+	protected void copyIds(BlockStorage source) {
+		for (int x = 0; x < Chunk.LENGTH; x++) {
+			for (int y = 0; y < Chunk.LENGTH; y++) {
+				for (int z = 0; z < Chunk.LENGTH; z++) {
+					setBlockId(x, y, z, source.getBlockId(x, y, z));
+				}
+			}
+		}
+	}
+
+	// Bulk edits below write block IDs directly and settle the palette counts once per call. Every block they
+	// write must already fit in the palette, which Chunk takes care of by expanding and reserving beforehand.
+	// Regions are in local coordinates, with inclusive minimums and exclusive maximums.
+
+	public void fillColumn(int x, int z, int minY, int maxY, Block block) {
+		fillBox(x, minY, z, x + 1, maxY, z + 1, block);
+	}
+
+	public void fillBox(int minX, int minY, int minZ, int maxX, int maxY, int maxZ, Block block) {
+		int index = reservePaletteIndex(block);
+		int[] removed = new int[mutablePalette.size()];
+		int added = 0;
+
+		for (int x = minX; x < maxX; x++) {
+			for (int y = minY; y < maxY; y++) {
+				for (int z = minZ; z < maxZ; z++) {
+					int oldId = getBlockId(x, y, z);
+					if (oldId != index) {
+						setBlockId(x, y, z, index);
+						removed[oldId]++;
+						added++;
+					}
+				}
+			}
+		}
+
+		blockCounts.set(index, blockCounts.get(index) + added);
+		settleCounts(removed);
+	}
+
+	// Copies a whole chunk of IDs into the palette given alongside them, laid out by MathUtil.index3D.
+	// IDs are unsigned bytes, so the source palette can hold up to 256 blocks.
+	public void setBlocks(Block[] palette, byte[] ids) {
+		int[] slots = new int[palette.length];
+		for (int i = 0; i < palette.length; i++) {
+			slots[i] = reservePaletteIndex(palette[i]);
+		}
+
+		int[] removed = new int[mutablePalette.size()];
+		int[] added = new int[mutablePalette.size()];
+		int i = 0;
+		for (int x = 0; x < Chunk.LENGTH; x++) {
+			for (int y = 0; y < Chunk.LENGTH; y++) {
+				for (int z = 0; z < Chunk.LENGTH; z++) {
+					int index = slots[ids[i++] & 0xFF];
+					int oldId = getBlockId(x, y, z);
+					if (oldId != index) {
+						setBlockId(x, y, z, index);
+						removed[oldId]++;
+						added[index]++;
+					}
+				}
+			}
+		}
+
+		for (int j = 0; j < added.length; j++) {
+			if (added[j] != 0) {
+				blockCounts.set(j, blockCounts.get(j) + added[j]);
+			}
+		}
+		settleCounts(removed);
+	}
+
+	public void copyFrom(BlockStorage source, int srcX, int srcY, int srcZ,
+	                     int dstX, int dstY, int dstZ, int sizeX, int sizeY, int sizeZ) {
+		int[] slots = new int[source.mutablePalette.size()];
+		for (int i = 1; i < slots.length; i++) {
+			Block block = source.mutablePalette.get(i);
+			if (block != null) {
+				slots[i] = reservePaletteIndex(block);
+			}
+		}
+
+		int[] removed = new int[mutablePalette.size()];
+		int[] added = new int[mutablePalette.size()];
+		for (int x = 0; x < sizeX; x++) {
+			for (int y = 0; y < sizeY; y++) {
+				for (int z = 0; z < sizeZ; z++) {
+					int index = slots[source.getBlockId(srcX + x, srcY + y, srcZ + z)];
+					int oldId = getBlockId(dstX + x, dstY + y, dstZ + z);
+					if (oldId != index) {
+						setBlockId(dstX + x, dstY + y, dstZ + z, index);
+						removed[oldId]++;
+						added[index]++;
+					}
+				}
+			}
+		}
+
+		for (int j = 0; j < added.length; j++) {
+			if (added[j] != 0) {
+				blockCounts.set(j, blockCounts.get(j) + added[j]);
+			}
+		}
+		settleCounts(removed);
+	}
+
+	// Applies removals from a bulk edit, then frees every slot left without blocks,
+	// including ones that were reserved but never written
+	private void settleCounts(int[] removed) {
+		for (int i = 1; i < removed.length; i++) {
+			if (removed[i] != 0) {
+				blockCounts.set(i, blockCounts.get(i) - removed[i]);
+			}
+		}
+
+		for (int i = 1; i < mutablePalette.size(); i++) {
+			if (mutablePalette.get(i) != null && blockCounts.get(i) <= 0) {
+				removeFromPalette(i);
+			}
+		}
+	}
+
 	protected abstract int getMaxPaletteSize();
 
 	public boolean needsExpansion(Block block) {
-		return mutablePalette.size() >= getMaxPaletteSize() && !mutablePalette.contains(block);
+		return freeSlots.size() == 0 && mutablePalette.size() >= getMaxPaletteSize() && getPaletteIndex(block) == -1;
 	}
 
 	public BlockStorage expand() {
 		throw new OutOfMemoryError("Cannot expand to larger block storage!");
 	}
 
+	// The smallest storage holding the same blocks, or this one if it can't get any smaller
+	public BlockStorage compact() {
+		return this;
+	}
+
+	// A copy that shares nothing this storage changes, for a chunk that has handed this one to a snapshot
+	public abstract BlockStorage copy();
+
 	public abstract byte[] getBytes();
 
 	public int getType() {
-		return REGISTERED_TYPES.indexOf(getClass());
+		return TYPE_IDS.get(getClass());
 	}
 
 	protected void updateBlockCounts() {
@@ -125,16 +357,122 @@ public abstract class BlockStorage {
 		return true;
 	}
 
-	public static BlockStorage decode(byte type, List<Block> palette, byte[] bytes) {
+	// Runs of equal palette indices in index3D order, each written as a varint length then a varint index,
+	// all compressed with Deflate. A terrain chunk comes out at a few hundred bytes.
+	public byte[] getCompressedBytes() {
+		ByteArrayOutputStream runs = new ByteArrayOutputStream(1024);
+		int runId = getBlockId(0, 0, 0);
+		int runLength = 0;
+		for (int x = 0; x < Chunk.LENGTH; x++) {
+			for (int y = 0; y < Chunk.LENGTH; y++) {
+				for (int z = 0; z < Chunk.LENGTH; z++) {
+					int id = getBlockId(x, y, z);
+					if (id != runId) {
+						writeVarInt(runs, runLength);
+						writeVarInt(runs, runId);
+						runId = id;
+						runLength = 0;
+					}
+					runLength++;
+				}
+			}
+		}
+		writeVarInt(runs, runLength);
+		writeVarInt(runs, runId);
+
+		Deflater deflater = new Deflater();
 		try {
-			return REGISTERED_TYPES.get(type).getDeclaredConstructor(List.class, byte[].class).newInstance(palette, bytes);
-		} catch (NoSuchMethodException
-				| InstantiationException
-				| IllegalAccessException
-				| IllegalArgumentException
-				| java.lang.reflect.InvocationTargetException e) {
-			e.printStackTrace();
-			return new ByteBlockStorage(palette, bytes);
+			deflater.setInput(runs.toByteArray());
+			deflater.finish();
+			ByteArrayOutputStream compressed = new ByteArrayOutputStream(runs.size() / 2 + 16);
+			byte[] buffer = new byte[1024];
+			while (!deflater.finished()) {
+				compressed.write(buffer, 0, deflater.deflate(buffer));
+			}
+			return compressed.toByteArray();
+		} finally {
+			deflater.end();
+		}
+	}
+
+	private static BlockStorage decodeCompressed(List<Block> palette, byte[] bytes) {
+		byte[] runs;
+		Inflater inflater = new Inflater();
+		try (InflaterInputStream stream = new InflaterInputStream(new ByteArrayInputStream(bytes), inflater)) {
+			runs = stream.readNBytes(MAX_RUN_BYTES + 1);
+		} catch (IOException e) {
+			throw new IllegalArgumentException("Corrupt compressed block array", e);
+		} finally {
+			inflater.end();
+		}
+
+		if (runs.length > MAX_RUN_BYTES) {
+			throw new IllegalArgumentException("Corrupt compressed block array: inflates past " + MAX_RUN_BYTES + " bytes");
+		}
+
+		// Typed as BlockStorage so the protected ID setters resolve here rather than in another package
+		BlockStorage storage = new PackedBlockStorage(palette, PackedBlockStorage.bitsFor(palette.size()));
+		int[] position = new int[1];
+		int block = 0;
+		while (position[0] < runs.length) {
+			int length = readVarInt(runs, position);
+			int id = readVarInt(runs, position);
+			if (id < 0 || id >= palette.size() || length <= 0 || length > Chunk.VOLUME - block) {
+				throw new IllegalArgumentException("Corrupt compressed block array: run of " + length + " x " + id + " at " + block);
+			}
+
+			for (int end = block + length; block < end; block++) {
+				int x = block / Chunk.AREA;
+				int y = block / Chunk.LENGTH % Chunk.LENGTH;
+				int z = block % Chunk.LENGTH;
+				storage.setBlockId(x, y, z, id);
+			}
+		}
+
+		if (block != Chunk.VOLUME) {
+			throw new IllegalArgumentException("Corrupt compressed block array: " + block + " of " + Chunk.VOLUME + " blocks");
+		}
+
+		storage.updateBlockCounts();
+		return storage.compact();
+	}
+
+	private static void writeVarInt(ByteArrayOutputStream stream, int value) {
+		while ((value & ~0x7F) != 0) {
+			stream.write(value & 0x7F | 0x80);
+			value >>>= 7;
+		}
+		stream.write(value);
+	}
+
+	private static int readVarInt(byte[] bytes, int[] position) {
+		int value = 0;
+		for (int shift = 0; shift < 32; shift += 7) {
+			if (position[0] >= bytes.length) {
+				break;
+			}
+
+			int b = bytes[position[0]++];
+			// The fifth byte only has room for bits 28 to 31
+			if (shift == 28 && (b & 0xF0) != 0) {
+				break;
+			}
+			value |= (b & 0x7F) << shift;
+			if ((b & 0x80) == 0) {
+				return value;
+			}
+		}
+		throw new IllegalArgumentException("Corrupt compressed block array: bad varint");
+	}
+
+	public static BlockStorage decode(byte type, List<Block> palette, byte[] bytes) {
+		if (type == COMPRESSED_TYPE) {
+			return decodeCompressed(palette, bytes);
+		}
+
+		if (type < 0 || type >= REGISTERED_TYPES.size()) {
+			throw new IllegalArgumentException("Unknown block array type " + type);
 		}
+		return REGISTERED_TYPES.get(type).factory().apply(palette, bytes);
 	}
 }
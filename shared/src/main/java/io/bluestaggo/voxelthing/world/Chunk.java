@@ -3,8 +3,9 @@ package io.bluestaggo.voxelthing.world;
 import io.bluestaggo.pds.*;
 import io.bluestaggo.voxelthing.Identifier;
 import io.bluestaggo.voxelthing.world.block.Block;
-import io.bluestaggo.voxelthing.world.storage.NibbleBlockStorage;
+import io.bluestaggo.voxelthing.world.storage.UniformBlockStorage;
 
+import java.io.IOException;
 import java.util.ArrayList;
 import java.util.List;
 import java.util.stream.Collectors;
@@ -21,9 +22,13 @@ public class Chunk implements IBlockAccess {
 
 	private BlockStorage blockStorage;
 	private boolean empty;
+	// Changed since it was generated, loaded or last handed to the saver
+	private boolean dirty;
+	// Set once the storage has been handed to a snapshot as well; the next write then copies it first
+	private boolean storageShared;
 
 	public Chunk(World world, int x, int y, int z) {
-		this(world, x, y, z, new NibbleBlockStorage());
+		this(world, x, y, z, new UniformBlockStorage());
 	}
 
 	public Chunk(World world, int x, int y, int z, BlockStorage blockStorage) {
@@ -57,20 +62,129 @@ public class Chunk implements IBlockAccess {
 	}
 
 	public void setBlock(int x, int y, int z, Block block) {
+		unshareStorage();
 		if (blockStorage.needsExpansion(block)) {
 			blockStorage = blockStorage.expand();
 		}
 		blockStorage.setBlock(x, y, z, block);
+		dirty = true;
 
 		if (block != null) {
 			empty = false;
 		}
 	}
 
+	private void unshareStorage() {
+		if (storageShared) {
+			blockStorage = blockStorage.copy();
+			storageShared = false;
+		}
+	}
+
+	private void reserve(Block block) {
+		while (blockStorage.needsExpansion(block)) {
+			blockStorage = blockStorage.expand();
+		}
+		blockStorage.reservePaletteIndex(block);
+	}
+
+	// Bulk edits take local coordinates, with inclusive minimums and exclusive maximums
+
+	public void fillColumn(int x, int z, int minY, int maxY, Block block) {
+		fillBox(x, minY, z, x + 1, maxY, z + 1, block);
+	}
+
+	public void fillBox(int minX, int minY, int minZ, int maxX, int maxY, int maxZ, Block block) {
+		if (minX <= 0 && minY <= 0 && minZ <= 0 && maxX >= LENGTH && maxY >= LENGTH && maxZ >= LENGTH) {
+			blockStorage = new UniformBlockStorage(block);
+			storageShared = false;
+			empty = block == null;
+			dirty = true;
+			return;
+		}
+
+		unshareStorage();
+		reserve(block);
+		blockStorage.fillBox(minX, minY, minZ, maxX, maxY, maxZ, block);
+		dirty = true;
+		if (block != null) {
+			empty = false;
+		}
+	}
+
+	// Replaces every block in the chunk from an array of IDs into the given palette, see BlockStorage.setBlocks
+	public void setBlocks(Block[] palette, byte[] ids) {
+		byte first = ids[0];
+		boolean uniform = true;
+		for (int i = 1; i < VOLUME; i++) {
+			if (ids[i] != first) {
+				uniform = false;
+				break;
+			}
+		}
+
+		if (uniform) {
+			fillBox(0, 0, 0, LENGTH, LENGTH, LENGTH, palette[first & 0xFF]);
+			return;
+		}
+
+		unshareStorage();
+		for (Block block : palette) {
+			reserve(block);
+		}
+		blockStorage.setBlocks(palette, ids);
+		dirty = true;
+		compact();
+	}
+
+	public void copyFrom(Chunk source, int srcX, int srcY, int srcZ,
+	                     int dstX, int dstY, int dstZ, int sizeX, int sizeY, int sizeZ) {
+		unshareStorage();
+		for (Block block : source.blockStorage.palette) {
+			reserve(block);
+		}
+		blockStorage.copyFrom(source.blockStorage, srcX, srcY, srcZ, dstX, dstY, dstZ, sizeX, sizeY, sizeZ);
+		dirty = true;
+		compact();
+	}
+
+	// Re-packs the blocks into the smallest storage that holds them
+	public void compact() {
+		blockStorage = blockStorage.compact();
+		empty = blockStorage.isEmpty();
+	}
+
 	public boolean isEmpty() {
 		return empty;
 	}
 
+	public boolean isDirty() {
+		return dirty;
+	}
+
+	public void clearDirty() {
+		dirty = false;
+	}
+
+	// A detached copy of the blocks, so they can be serialized on another thread while this chunk keeps changing.
+	// Both chunks keep the same storage until one of them writes, which then copies it; taking a snapshot is cheap
+	// enough to do on the main thread, and a chunk that isn't changed again is never copied at all.
+	public Chunk snapshot() {
+		Chunk copy = new Chunk(world, x, y, z, blockStorage);
+		copy.storageShared = true;
+		storageShared = true;
+		return copy;
+	}
+
+	public boolean isUniform() {
+		return blockStorage instanceof UniformBlockStorage;
+	}
+
+	// The block filling the whole chunk, or null if it holds more than one block type or only air
+	public Block getUniformBlock() {
+		return blockStorage instanceof UniformBlockStorage uniform ? uniform.getUniformBlock() : null;
+	}
+
 	public boolean contains(int x, int y, int z) {
 		x -= this.x * Chunk.LENGTH;
 		y -= this.y * Chunk.LENGTH;
@@ -92,8 +206,14 @@ public class Chunk implements IBlockAccess {
 				.collect(Collectors.toList()));
 		item.map.put("blockPalette", paletteItem);
 
-		item.map.put("blockArrayType", new ByteItem(blockStorage.getType()));
-		item.map.put("blocks", new ByteArrayItem(blockStorage.getBytes()));
+		// Uniform storage has no block array to speak of, everything else compresses well
+		if (isUniform()) {
+			item.map.put("blockArrayType", new ByteItem(blockStorage.getType()));
+			item.map.put("blocks", new ByteArrayItem(blockStorage.getBytes()));
+		} else {
+			item.map.put("blockArrayType", new ByteItem(BlockStorage.COMPRESSED_TYPE));
+			item.map.put("blocks", new ByteArrayItem(blockStorage.getCompressedBytes()));
+		}
 
 		return item;
 	}
@@ -112,4 +232,54 @@ public class Chunk implements IBlockAccess {
 
 		return new Chunk(world, x, y, z, storage);
 	}
+
+	// Same layout as serialize(), written straight to a stream
+	public void write(PdsWriter writer) throws IOException {
+		List<Block> palette = blockStorage.palette;
+		writer.beginCompound(3);
+
+		writer.name("blockPalette").beginList(palette.size());
+		for (Block block : palette) {
+			(block == null ? Block.ID_AIR : block.id).write(writer);
+		}
+		writer.end();
+
+		if (isUniform()) {
+			writer.name("blockArrayType").writeByte(blockStorage.getType());
+			writer.name("blocks").writeByteArray(blockStorage.getBytes());
+		} else {
+			writer.name("blockArrayType").writeByte(BlockStorage.COMPRESSED_TYPE);
+			writer.name("blocks").writeByteArray(blockStorage.getCompressedBytes());
+		}
+
+		writer.end();
+	}
+
+	public static Chunk read(World world, int x, int y, int z, PdsReader reader) throws IOException {
+		List<Block> palette = null;
+		byte[] blocks = null;
+		int blockArrayType = -1;
+
+		reader.enterCompound();
+		while (reader.nextType() != StructureItem.TYPE_END) {
+			switch (reader.nextName()) {
+				case "blockPalette" -> {
+					palette = new ArrayList<>(reader.enterList());
+					while (reader.nextType() != StructureItem.TYPE_END) {
+						palette.add(Block.fromId(Identifier.read(reader)));
+					}
+					reader.exit();
+				}
+				case "blockArrayType" -> blockArrayType = reader.readByte();
+				case "blocks" -> blocks = reader.readByteArray();
+				default -> reader.skip();
+			}
+		}
+		reader.exit();
+
+		if (palette == null || blocks == null || blockArrayType == -1) {
+			throw new IOException("Chunk at " + x + ", " + y + ", " + z + " is missing its palette or blocks");
+		}
+		return new Chunk(world, x, y, z, BlockStorage.decode((byte) blockArrayType, palette, blocks));
+	}
 }
@@ -1,42 +1,96 @@
 package io.bluestaggo.voxelthing.world;
 
+import io.bluestaggo.pds.CompoundItem;
+import io.bluestaggo.pds.IntItem;
+import io.bluestaggo.pds.LongItem;
 import io.bluestaggo.voxelthing.math.AABB;
 import io.bluestaggo.voxelthing.math.MathUtil;
 import io.bluestaggo.voxelthing.world.block.Block;
+import io.bluestaggo.voxelthing.world.generation.BiomePoints;
+import io.bluestaggo.voxelthing.world.generation.BlockPlacement;
+import io.bluestaggo.voxelthing.world.generation.CaveVolume;
+import io.bluestaggo.voxelthing.world.generation.ChunkGenerationExecutor;
 import io.bluestaggo.voxelthing.world.generation.GenCache;
 import io.bluestaggo.voxelthing.world.generation.GenerationInfo;
+import io.bluestaggo.voxelthing.world.generation.PendingPlacements;
+import io.bluestaggo.voxelthing.world.generation.StructureWriter;
+import io.bluestaggo.voxelthing.world.generation.Structures;
 import io.bluestaggo.voxelthing.world.storage.ChunkStorage;
+import io.bluestaggo.voxelthing.world.storage.WorldSave;
 import org.joml.Vector3d;
 import org.joml.Vector3i;
 
 
+import java.io.IOException;
 import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.List;
 import java.util.Random;
 
 public class World implements IBlockAccess {
+	// Blocks the terrain generator writes, indexed by the IDs it fills its chunk buffer with
+	private static final Block[] GEN_PALETTE = {
+			null, Block.STONE, Block.DIRT, Block.GRASS, Block.SAND, Block.SNOW, Block.WATER, Block.LOG
+	};
+	private static final byte[] GEN_IDS = new byte[Block.REGISTERED_BLOCKS_ORDERED.size()];
+	private static final ThreadLocal<byte[]> GEN_BLOCKS = ThreadLocal.withInitial(() -> new byte[Chunk.VOLUME]);
+	private static final ThreadLocal<CaveVolume> GEN_CAVES = ThreadLocal.withInitial(CaveVolume::new);
+
+	private static final long SAVE_INTERVAL_NANOS = 5_000_000_000L;
+	// Bounds the chunks handed to the save thread per update, and how far the save thread may fall behind
+	private static final int MAX_SNAPSHOTS_PER_UPDATE = 16;
+	private static final int MAX_QUEUED_SAVES = 512;
+
+	static {
+		for (int i = 1; i < GEN_PALETTE.length; i++) {
+			GEN_IDS[GEN_PALETTE[i].numericId] = (byte) i;
+		}
+	}
+
 	protected final ChunkStorage chunkStorage;
 	public final GenCache genCache;
+	public final BiomePoints biomePoints;
+	protected final ChunkGenerationExecutor generationExecutor;
+	protected final PendingPlacements pendingPlacements = new PendingPlacements();
+	public final WorldSave save;
+	private long nextSaveTime;
+	private boolean saving;
 
 	public final Random random = new Random();
-	public final long seed = random.nextLong();
+	public final long seed;
 
 	public int worldType = 1;
 
 	public double partialTick;
 
 	public double playerX;
+	public double playerY;
 	public double playerZ;
 
 
 	public World(int type) {
+		this(type, new Random().nextLong());
+	}
+
+	// Generated terrain is a pure function of the seed and chunk position, whichever threads generate it
+	public World(int type, long seed) {
+		this(type, seed, null);
+	}
+
+	// With a save, chunks are loaded from it before being generated and changed chunks are written back to it
+	public World(int type, long seed, WorldSave save) {
+		this.seed = seed;
+		this.save = save;
+		nextSaveTime = System.nanoTime() + SAVE_INTERVAL_NANOS;
 		chunkStorage = new ChunkStorage(this);
 		genCache = new GenCache(this);
+		biomePoints = new BiomePoints(seed);
+		generationExecutor = new ChunkGenerationExecutor(this);
 		worldType = type;
 	}
 
 	protected void debugChunk() {
-		int range = 1 << ChunkStorage.RADIUS_POW2 >> 1;
+		int range = 16;
 		for (int x = -range; x <= range; x++) {
 			for (int z = -range; z <= range; z++) {
 				Chunk chunk = chunkStorage.newChunkAt(x, 0, z);
@@ -63,6 +117,7 @@ public class World implements IBlockAccess {
 						}
 					}
 				}
+				chunkStorage.markDirty(chunk);
 			}
 		}
 	}
@@ -111,6 +166,7 @@ public class World implements IBlockAccess {
 				Math.floorMod(z, Chunk.LENGTH),
 				block
 		);
+		chunkStorage.markDirty(chunk);
 		onBlockUpdate(x, y, z);
 	}
 
@@ -119,25 +175,107 @@ public class World implements IBlockAccess {
 			return;
 		}
 
-		Chunk chunk = chunkStorage.newChunkAt(cx, cy, cz);
-		GenerationInfo genInfo = genCache.getGenerationAt(cx, cz);
+		List<BlockPlacement> placements = new ArrayList<>();
+		addGeneratedChunk(loadOrGenerateChunk(cx, cy, cz, placements), placements);
+	}
+
+	// Called from generation threads as well as the main thread
+	public Chunk loadOrGenerateChunk(int cx, int cy, int cz, List<BlockPlacement> placements) {
+		if (save != null) {
+			try {
+				// So that addGeneratedChunk finds the chunk's saved structure blocks without reading them itself
+				save.preloadPlacements(cx, cy, cz);
+			} catch (IOException e) {
+				System.err.println("Failed to load structure placements for chunk at " + cx + ", " + cy + ", " + cz);
+				e.printStackTrace();
+			}
+
+			try {
+				Chunk chunk = save.loadChunk(this, cx, cy, cz);
+				if (chunk != null) {
+					return chunk;
+				}
+			} catch (IOException | IllegalArgumentException e) {
+				System.err.println("Failed to load chunk at " + cx + ", " + cy + ", " + cz + ", generating it again");
+				e.printStackTrace();
+			}
+		}
 
+		return generateChunk(cx, cy, cz, placements);
+	}
+
+	public Chunk generateChunk(int cx, int cy, int cz, List<BlockPlacement> placements) {
+		return generateChunk(cx, cy, cz, placements, true);
+	}
+
+	// With surfaceBounds off, every chunk goes through the per-voxel loop instead of being filled from the column's
+	// min/max surface height. The blocks come out the same; ChunkGenerationBenchmark uses it as the baseline.
+	Chunk generateChunk(int cx, int cy, int cz, List<BlockPlacement> placements, boolean surfaceBounds) {
+		Chunk chunk = new Chunk(this, cx, cy, cz);
+		GenerationInfo genInfo = genCache.getGenerationAt(cx, cz);
+		// Terrain is built as raw IDs into GEN_PALETTE and copied into the chunk in one go
+		byte[] blocks = GEN_BLOCKS.get();
 
 		genInfo.generate(worldType);
-		int vx = (int)((Math.round(cx*32/genInfo.gridDist) * 50));
-		int vz = (int)((Math.round(cz*32/genInfo.gridDist) * 50));
-		genInfo.voronoiSeedsGen(vx, vz);
+
+		float exp = worldType == 1 ? 0.08f : 0.15f;
+		int bottom = cy * Chunk.LENGTH;
+		float minSurface = surfaceHeight(genInfo.getMinHeight(), exp);
+		float maxSurface = surfaceHeight(genInfo.getMaxHeight(), exp);
+
+		// Caves are only carved below the surface, so chunks above the whole heightmap never sample them
+		CaveVolume caves = null;
+		if (bottom < maxSurface || !surfaceBounds) {
+			caves = GEN_CAVES.get();
+			genInfo.fillCaves(caves, cy);
+		}
+
+		if (surfaceBounds && bottom + Chunk.LENGTH - 1 < minSurface - 4) {
+			// Below the dirt layer of every column: all stone apart from caves
+			Arrays.fill(blocks, GEN_IDS[Block.STONE.numericId]);
+			caves.carve(blocks);
+		} else {
+			Arrays.fill(blocks, (byte) 0);
+			// Above every column only air is left, unless the type 1 sea fills it below y = 0
+			if (bottom < maxSurface || worldType == 1 && bottom < 0 || !surfaceBounds) {
+				generateTerrain(cx, cy, cz, genInfo, caves, exp, blocks);
+			}
+		}
+
+		// Structures go on top of the finished terrain; anything outside this chunk is handed back in placements
+		StructureWriter writer = (x, y, z, block, onlyIntoAir) ->
+				placeGeneratedBlock(chunk, blocks, placements, x, y, z, block, onlyIntoAir);
+		for (int i = 0; i < genInfo.getTreeCount(); i++) {
+			int x = genInfo.getTreeX(i);
+			int z = genInfo.getTreeZ(i);
+			float height = surfaceHeight(genInfo.getHeight(x, z), exp);
+			int yy = Math.round(height);
+			if (yy >> Chunk.SIZE_POW2 != cy || yy < height && caves.isCave(x, yy, z)) {
+				continue;
+			}
+
+			Structures.Tree1.place(writer, cx * Chunk.LENGTH + x, yy, cz * Chunk.LENGTH + z);
+		}
+
+		chunk.setBlocks(GEN_PALETTE, blocks);
+		// Generating the chunk again gives the same blocks, so it only needs saving once it changes. A chunk that
+		// spilled structure blocks stays dirty though: generated again, it would spill them over later edits.
+		if (placements.isEmpty()) {
+			chunk.clearDirty();
+		}
+		return chunk;
+	}
+
+	private void generateTerrain(int cx, int cy, int cz, GenerationInfo genInfo, CaveVolume caves, float exp, byte[] blocks) {
 		for (int x = 0; x < Chunk.LENGTH; x++) {
 			for (int z = 0; z < Chunk.LENGTH; z++) {
-				float height = genInfo.getHeight(x, z);
-				float exp = worldType == 1 ? 0.08f : 0.15f;
-				height = height > 20 ? height + (float)Math.pow(Math.exp(height-20),exp)-1 : height;
-				
+				float height = surfaceHeight(genInfo.getHeight(x, z), exp);
+
 				for (int y = 0; y < Chunk.LENGTH; y++) {
 					int yy = cy * Chunk.LENGTH + y;
 					int xx = cx * Chunk.LENGTH + x;
 					int zz = cz * Chunk.LENGTH + z;
-					boolean cave = yy < height && genInfo.getCave(x, yy, z);
+					boolean cave = yy < height && caves.isCave(x, yy, z);
 					Block block = null;
 					//increase water level for chaotic world
 					int waterLevel = worldType == 1 ? 0 : 2;
@@ -148,7 +286,7 @@ public class World implements IBlockAccess {
 							block = Block.DIRT;
 							//blends grass -> snow
 							if (yy > 18) {
-								if (Math.random() > 0.5) {
+								if (genInfo.blend(xx, yy, zz)) {
 									block = Block.DIRT;
 								} else {
 									block = Block.SNOW;
@@ -158,7 +296,7 @@ public class World implements IBlockAccess {
 							block = Block.GRASS;
 							//blends grass -> snow
 							if (yy > 18) {
-								if (Math.random() > 0.5) {
+								if (genInfo.blend(xx, yy, zz)) {
 									block = Block.GRASS;
 								} else {
 									block = Block.SNOW;
@@ -171,25 +309,131 @@ public class World implements IBlockAccess {
 						} else if (yy < waterLevel && worldType == 1) {
 							block = Block.WATER;
 						}
-						
-					if (genInfo.genTree(xx, zz) && yy == Math.round(height)) {
-						block = Block.LOG;
-						setBlock(xx, yy+1, zz, Block.LOG);
-						setBlock(xx, yy+2, zz, Block.LOG);
-						setBlock(xx, yy+3, zz, Block.LOG);
-						if (getBlock(xx, yy-1, zz) == null) {
-							setBlock(xx, yy-1, zz, Block.LOG);
-						}
 					}
-				}
 					if (block != null) {
-						chunk.setBlock(x, y, z, block);
+						blocks[MathUtil.index3D(x, y, z, Chunk.LENGTH)] = GEN_IDS[block.numericId];
 					}
 				}
 			}
 		}
+	}
+
+	// Steepens everything above y = 20 into mountains; never lowers a height, so it preserves the maximum
+	private static float surfaceHeight(float height, float exp) {
+		return height > 20 ? height + (float)Math.pow(Math.exp(height-20),exp)-1 : height;
+	}
+
+	private void placeGeneratedBlock(Chunk chunk, byte[] blocks, List<BlockPlacement> placements,
+	                                 int x, int y, int z, Block block, boolean onlyIntoAir) {
+		if (!chunk.contains(x, y, z)) {
+			placements.add(new BlockPlacement(x, y, z, block, onlyIntoAir));
+			return;
+		}
+
+		int i = MathUtil.index3D(x & Chunk.LENGTH_MASK, y & Chunk.LENGTH_MASK, z & Chunk.LENGTH_MASK, Chunk.LENGTH);
+		if (!onlyIntoAir || blocks[i] == 0) {
+			blocks[i] = GEN_IDS[block.numericId];
+		}
+	}
+
+	// Structure blocks are written straight into chunk storage without block updates. Ones meant for this chunk
+	// that were waiting on it go in first, then the ones it spilled go to loaded neighbours or wait for theirs.
+	protected void addGeneratedChunk(Chunk chunk, List<BlockPlacement> placements) {
+		if (!chunkStorage.addChunk(chunk)) {
+			return;
+		}
+
+		List<BlockPlacement> waiting = pendingPlacements.take(chunk.x, chunk.y, chunk.z);
+		if (waiting != null) {
+			for (BlockPlacement placement : waiting) {
+				applyPlacement(chunk, placement);
+			}
+		}
+		if (save != null) {
+			try {
+				List<BlockPlacement> saved = save.takePlacements(chunk.x, chunk.y, chunk.z);
+				if (saved != null) {
+					for (BlockPlacement placement : saved) {
+						applyPlacement(chunk, placement);
+					}
+				}
+			} catch (IOException e) {
+				System.err.println("Failed to load structure placements for chunk at " + chunk.x + ", " + chunk.y + ", " + chunk.z);
+				e.printStackTrace();
+			}
+		}
+
+		onChunkAdded(chunk.x, chunk.y, chunk.z);
+
+		Chunk lastChanged = null;
+		for (BlockPlacement placement : placements) {
+			Chunk target = getChunkAtBlock(placement.x, placement.y, placement.z);
+			if (target == null) {
+				pendingPlacements.add(placement);
+				continue;
+			}
+
+			if (applyPlacement(target, placement) && target != lastChanged) {
+				if (lastChanged != null) {
+					onChunkChanged(lastChanged.x, lastChanged.y, lastChanged.z);
+				}
+				lastChanged = target;
+			}
+		}
+
+		if (lastChanged != null) {
+			onChunkChanged(lastChanged.x, lastChanged.y, lastChanged.z);
+		}
+	}
+
+	private boolean applyPlacement(Chunk chunk, BlockPlacement placement) {
+		int x = placement.x & Chunk.LENGTH_MASK;
+		int y = placement.y & Chunk.LENGTH_MASK;
+		int z = placement.z & Chunk.LENGTH_MASK;
+		if (placement.onlyIntoAir && chunk.getBlock(x, y, z) != null) {
+			return false;
+		}
+
+		chunk.setBlock(x, y, z, placement.block);
+		chunkStorage.markDirty(chunk);
+		return true;
+	}
+
+	public void requestChunkAt(int x, int y, int z) {
+		if (chunkExists(x, y, z)) {
+			return;
+		}
 
-		onChunkAdded(cx, cy, cz);
+		generationExecutor.setCenter(
+				(int) Math.floor(playerX / Chunk.LENGTH),
+				(int) Math.floor(playerY / Chunk.LENGTH),
+				(int) Math.floor(playerZ / Chunk.LENGTH)
+		);
+		generationExecutor.request(x, y, z);
+	}
+
+	public boolean isChunkPending(int x, int y, int z) {
+		return generationExecutor.isPending(x, y, z);
+	}
+
+	public void update() {
+		int cx = (int) Math.floor(playerX / Chunk.LENGTH);
+		int cy = (int) Math.floor(playerY / Chunk.LENGTH);
+		int cz = (int) Math.floor(playerZ / Chunk.LENGTH);
+		for (int x = -1; x <= 1; x++) {
+			for (int y = -1; y <= 1; y++) {
+				for (int z = -1; z <= 1; z++) {
+					requestChunkAt(cx + x, cy + y, cz + z);
+				}
+			}
+		}
+
+		ChunkGenerationExecutor.Task task;
+		while ((task = generationExecutor.pollFinished()) != null) {
+			addGeneratedChunk(task.getChunk(), task.placements);
+		}
+
+		saveDirtyChunks();
 	}
 
 	public void loadSurroundingChunks(int cx, int cy, int cz, int radius) {
@@ -221,6 +465,79 @@ public class World implements IBlockAccess {
 		return chunk;
 	}
 
+	public void unloadChunkAt(int x, int y, int z) {
+		Chunk chunk = chunkStorage.unloadChunkAt(x, y, z);
+		if (chunk != null) {
+			// Nothing touches an unloaded chunk again, so it can be saved as it is
+			if (save != null && chunk.isDirty()) {
+				chunk.clearDirty();
+				save.saveChunk(chunk);
+			}
+			onChunkRemoved(x, y, z);
+		}
+	}
+
+	public void saveLevel() {
+		if (save == null) {
+			return;
+		}
+
+		CompoundItem level = new CompoundItem();
+		level.map.put("seed", new LongItem(seed));
+		level.map.put("type", new IntItem(worldType));
+		try {
+			save.writeLevel(level);
+		} catch (IOException e) {
+			e.printStackTrace();
+		}
+	}
+
+	// Every SAVE_INTERVAL_NANOS, hands snapshots of changed chunks to the save thread a few per update
+	private void saveDirtyChunks() {
+		if (save == null) {
+			return;
+		}
+
+		if (!saving) {
+			long now = System.nanoTime();
+			if (now < nextSaveTime) {
+				return;
+			}
+			saving = true;
+			nextSaveTime = now + SAVE_INTERVAL_NANOS;
+			save.flushPlacements();
+		}
+
+		if (save.getQueuedCount() >= MAX_QUEUED_SAVES) {
+			return;
+		}
+
+		List<Chunk> dirty = chunkStorage.takeDirtyChunks(MAX_SNAPSHOTS_PER_UPDATE);
+		for (Chunk chunk : dirty) {
+			save.saveChunk(chunk.snapshot());
+		}
+
+		if (dirty.size() < MAX_SNAPSHOTS_PER_UPDATE) {
+			saving = false;
+		}
+	}
+
+	public void unloadDistantChunks(int cx, int cy, int cz, int radius) {
+		for (Chunk chunk : chunkStorage.getChunksOutside(cx, cy, cz, radius)) {
+			unloadChunkAt(chunk.x, chunk.y, chunk.z);
+		}
+		generationExecutor.cancelOutside(cx, cy, cz, radius);
+		// Loaded chunks only spill one chunk over, so nothing they placed is further out than this
+		List<BlockPlacement> distant = pendingPlacements.removeOutside(cx, cy, cz, radius + 1);
+		if (save != null && !distant.isEmpty()) {
+			save.savePlacements(distant);
+		}
+	}
+
+	public int getLoadedChunkCount() {
+		return chunkStorage.getLoadedCount();
+	}
+
 	public List<AABB> getSurroundingCollision(AABB box) {
 		List<AABB> boxes = new ArrayList<>();
 
@@ -297,6 +614,28 @@ public class World implements IBlockAccess {
 		
 	}
 
+	public void onChunkRemoved(int x, int y, int z) {
+	}
+
+	// Called when blocks in a loaded chunk change without individual block updates
+	public void onChunkChanged(int x, int y, int z) {
+	}
+
 	public void close() {
+		generationExecutor.shutdown();
+
+		if (save != null) {
+			saveLevel();
+			save.savePlacements(pendingPlacements.takeAll());
+			for (Chunk chunk : chunkStorage.takeDirtyChunks(Integer.MAX_VALUE)) {
+				save.saveChunk(chunk);
+			}
+
+			try {
+				save.close();
+			} catch (IOException e) {
+				e.printStackTrace();
+			}
+		}
 	}
 }
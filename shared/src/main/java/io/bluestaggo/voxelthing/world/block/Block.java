@@ -62,6 +62,8 @@ public class Block {
 			.toArray(Block[]::new);
 
 	public final Identifier id;
+	// Position in REGISTERED_BLOCKS_ORDERED, only meaningful while the game is running and never saved
+	public final int numericId;
 	protected BlockTexture texture;
 	protected BlockTransparency transparency = BlockTransparency.NONE;
 
@@ -83,6 +85,7 @@ public class Block {
 		}
 
 		this.id = id;
+		this.numericId = REGISTERED_BLOCKS_ORDERED_MUTABLE.size();
 		REGISTERED_BLOCKS_ORDERED_MUTABLE.add(this);
 		REGISTERED_BLOCKS_MUTABLE.put(id, this);
 	}
@@ -60,6 +60,10 @@ public class Entity {
 		prevRotYaw = rotYaw;
 		prevRotPitch = rotPitch;
 
+		if (!world.chunkExistsAtBlock((int) Math.floor(posX), (int) Math.floor(posY), (int) Math.floor(posZ))) {
+			return;
+		}
+
 		update();
 		updateMovement();
 	}
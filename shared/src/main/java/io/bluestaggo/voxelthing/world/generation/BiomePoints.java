@@ -0,0 +1,107 @@
+package io.bluestaggo.voxelthing.world.generation;
+
+import io.bluestaggo.voxelthing.math.OpenSimplex2Octaves;
+import io.bluestaggo.voxelthing.util.LongClockCache;
+
+// Jittered grid of biome seed points, one per CELL_SIZE square cell, each within half a cell of its lattice corner.
+// A position is at most half a cell from the nearest corner, so its own cell's point is never further than
+// sqrt(2) cells away, while any point three or more cells over is at least two cells away. The nearest point
+// is therefore always in the 5x5 cells around the position.
+// Points are generated lazily a region of cells at a time and kept as plain floats in a LongClockCache.
+// Cells are identified by GenCache.columnKey of their cell coordinates.
+public class BiomePoints {
+	public static final int CELL_SIZE = 50;
+	private static final float JITTER = CELL_SIZE / 2;
+	private static final int SEARCH_RADIUS = 2;
+
+	private static final int REGION_POW2 = 4;
+	private static final int REGION_LENGTH = 1 << REGION_POW2;
+	private static final int REGION_MASK = REGION_LENGTH - 1;
+	public static final int DEFAULT_CAPACITY = 64;
+
+	private final long seedX;
+	private final long seedZ;
+	private final LongClockCache<float[]> regions;
+
+	public BiomePoints(long salt) {
+		this(salt, DEFAULT_CAPACITY);
+	}
+
+	public BiomePoints(long salt, int capacity) {
+		seedX = GenerationInfo.deriveSeed(salt, 6);
+		seedZ = GenerationInfo.deriveSeed(salt, 7);
+		regions = new LongClockCache<>(capacity);
+	}
+
+	public float getPointX(int cellX, int cellZ) {
+		return getRegion(cellX, cellZ)[pointIndex(cellX, cellZ)];
+	}
+
+	public float getPointZ(int cellX, int cellZ) {
+		return getRegion(cellX, cellZ)[pointIndex(cellX, cellZ) + 1];
+	}
+
+	// Returns the key of the cell whose point is closest to (x, z)
+	public long getNearestCell(double x, double z) {
+		int centerX = (int) Math.round(x / CELL_SIZE);
+		int centerZ = (int) Math.round(z / CELL_SIZE);
+		int nearestX = centerX;
+		int nearestZ = centerZ;
+		double nearestDist = Double.POSITIVE_INFINITY;
+
+		for (int cellX = centerX - SEARCH_RADIUS; cellX <= centerX + SEARCH_RADIUS; cellX++) {
+			for (int cellZ = centerZ - SEARCH_RADIUS; cellZ <= centerZ + SEARCH_RADIUS; cellZ++) {
+				// Skips cells whose whole jitter square is further away than the best point so far
+				double gapX = Math.max(0.0, Math.abs(cellX * CELL_SIZE - x) - JITTER);
+				double gapZ = Math.max(0.0, Math.abs(cellZ * CELL_SIZE - z) - JITTER);
+				if (gapX * gapX + gapZ * gapZ >= nearestDist) {
+					continue;
+				}
+
+				float[] region = getRegion(cellX, cellZ);
+				int i = pointIndex(cellX, cellZ);
+				double dx = region[i] - x;
+				double dz = region[i + 1] - z;
+				double dist = dx * dx + dz * dz;
+				if (dist < nearestDist) {
+					nearestDist = dist;
+					nearestX = cellX;
+					nearestZ = cellZ;
+				}
+			}
+		}
+
+		return GenCache.columnKey(nearestX, nearestZ);
+	}
+
+	private static int pointIndex(int cellX, int cellZ) {
+		return ((cellX & REGION_MASK) << REGION_POW2 | cellZ & REGION_MASK) << 1;
+	}
+
+	public int size() {
+		return regions.size();
+	}
+
+	private float[] getRegion(int cellX, int cellZ) {
+		int regionX = cellX >> REGION_POW2;
+		int regionZ = cellZ >> REGION_POW2;
+		long key = GenCache.columnKey(regionX, regionZ);
+		float[] points = regions.get(key);
+		if (points != null) {
+			return points;
+		}
+
+		points = new float[REGION_LENGTH * REGION_LENGTH * 2];
+		for (int x = 0; x < REGION_LENGTH; x++) {
+			for (int z = 0; z < REGION_LENGTH; z++) {
+				int lx = ((regionX << REGION_POW2) + x) * CELL_SIZE;
+				int lz = ((regionZ << REGION_POW2) + z) * CELL_SIZE;
+				int i = (x << REGION_POW2 | z) << 1;
+				points[i] = lx + OpenSimplex2Octaves.noise2(seedX, 1, lx, lz) * JITTER;
+				points[i + 1] = lz + OpenSimplex2Octaves.noise2(seedZ, 1, lx, lz) * JITTER;
+			}
+		}
+
+		return regions.putIfAbsent(key, points);
+	}
+}
@@ -0,0 +1,17 @@
+package io.bluestaggo.voxelthing.world.generation;
+
+import io.bluestaggo.voxelthing.world.block.Block;
+
+public class BlockPlacement {
+	public final int x, y, z;
+	public final Block block;
+	public final boolean onlyIntoAir;
+
+	public BlockPlacement(int x, int y, int z, Block block, boolean onlyIntoAir) {
+		this.x = x;
+		this.y = y;
+		this.z = z;
+		this.block = block;
+		this.onlyIntoAir = onlyIntoAir;
+	}
+}
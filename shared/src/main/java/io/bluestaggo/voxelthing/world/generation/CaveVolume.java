@@ -0,0 +1,104 @@
+package io.bluestaggo.voxelthing.world.generation;
+
+import io.bluestaggo.voxelthing.math.MathUtil;
+import io.bluestaggo.voxelthing.math.OpenSimplex2Octaves;
+import io.bluestaggo.voxelthing.world.Chunk;
+
+// Cheese cave density for one chunk, sampled every 4 blocks and interpolated in between.
+// Filling it again for the same chunk and seed is a no-op, so a generator can keep one per thread.
+public class CaveVolume {
+	private static final int SAMPLE_POW2 = 2;
+	private static final int SAMPLE_MASK = (1 << SAMPLE_POW2) - 1;
+	private static final float SAMPLE_SPACING = 1 << SAMPLE_POW2;
+	private static final int LENGTH = (Chunk.LENGTH >> SAMPLE_POW2) + 1;
+	private static final int SIZE = LENGTH * LENGTH * LENGTH;
+
+	private static final int CHEESE_OCTAVES = 4;
+	private static final double CHEESE_SCALE_XZ = 100.0;
+	private static final double CHEESE_SCALE_Y = 50.0;
+	private static final float CHEESE_MIN_DENSITY = -1.0f;
+	private static final float CHEESE_MAX_DENSITY = -0.3f;
+	private static final float CHEESE_DENSITY_SPREAD = 100.0f;
+	private static final float CHEESE_DENSITY_SURFACE = -0.5f;
+	// Slack for lerp rounding when ruling out a whole cell from its corners
+	private static final float CELL_EPSILON = 1.0e-4f;
+
+	private final float[] density = new float[SIZE];
+	private boolean filled;
+	private long seed;
+	private int cx, cy, cz;
+
+	public void fill(long seed, int cx, int cy, int cz) {
+		if (filled && this.seed == seed && this.cx == cx && this.cy == cy && this.cz == cz) {
+			return;
+		}
+
+		OpenSimplex2Octaves.noise3Grid_ImproveXZ(seed, CHEESE_OCTAVES,
+				cx << Chunk.SIZE_POW2, cy << Chunk.SIZE_POW2, cz << Chunk.SIZE_POW2, 1 << SAMPLE_POW2,
+				CHEESE_SCALE_XZ, CHEESE_SCALE_Y, LENGTH, LENGTH, LENGTH, density);
+
+		filled = true;
+		this.seed = seed;
+		this.cx = cx;
+		this.cy = cy;
+		this.cz = cz;
+	}
+
+	// Takes chunk-local x and z but a world y, since the cheese threshold thins out with depth
+	public boolean isCave(int x, int y, int z) {
+		int xx = x >> SAMPLE_POW2;
+		int yy = (y & Chunk.LENGTH_MASK) >> SAMPLE_POW2;
+		int zz = z >> SAMPLE_POW2;
+
+		float c000 = density[MathUtil.index3D(xx, yy, zz, LENGTH)];
+		float c001 = density[MathUtil.index3D(xx, yy, zz + 1, LENGTH)];
+		float c010 = density[MathUtil.index3D(xx, yy + 1, zz, LENGTH)];
+		float c011 = density[MathUtil.index3D(xx, yy + 1, zz + 1, LENGTH)];
+		float c100 = density[MathUtil.index3D(xx + 1, yy, zz, LENGTH)];
+		float c101 = density[MathUtil.index3D(xx + 1, yy, zz + 1, LENGTH)];
+		float c110 = density[MathUtil.index3D(xx + 1, yy + 1, zz, LENGTH)];
+		float c111 = density[MathUtil.index3D(xx + 1, yy + 1, zz + 1, LENGTH)];
+		float value = MathUtil.trilinear(c000, c001, c010, c011, c100, c101, c110, c111,
+				(x & SAMPLE_MASK) / SAMPLE_SPACING, (y & SAMPLE_MASK) / SAMPLE_SPACING, (z & SAMPLE_MASK) / SAMPLE_SPACING);
+		return value < cheeseThreshold(y);
+	}
+
+	// Clears every cave block from a chunk buffer that is solid everywhere. Interpolated density never goes
+	// below the lowest corner of its cell, and the threshold only falls with height, so a cell whose corners
+	// all clear the threshold at its bottom has no caves and is skipped without touching its blocks.
+	public void carve(byte[] ids) {
+		int y0 = cy << Chunk.SIZE_POW2;
+		for (int cellX = 0; cellX < LENGTH - 1; cellX++) {
+			for (int cellY = 0; cellY < LENGTH - 1; cellY++) {
+				float threshold = cheeseThreshold(y0 + (cellY << SAMPLE_POW2));
+				for (int cellZ = 0; cellZ < LENGTH - 1; cellZ++) {
+					if (minCorner(cellX, cellY, cellZ) - CELL_EPSILON >= threshold) {
+						continue;
+					}
+
+					for (int x = cellX << SAMPLE_POW2; x < cellX + 1 << SAMPLE_POW2; x++) {
+						for (int y = cellY << SAMPLE_POW2; y < cellY + 1 << SAMPLE_POW2; y++) {
+							for (int z = cellZ << SAMPLE_POW2; z < cellZ + 1 << SAMPLE_POW2; z++) {
+								if (isCave(x, y0 + y, z)) {
+									ids[MathUtil.index3D(x, y, z, Chunk.LENGTH)] = 0;
+								}
+							}
+						}
+					}
+				}
+			}
+		}
+	}
+
+	private float minCorner(int x, int y, int z) {
+		float min = Float.POSITIVE_INFINITY;
+		for (int i = 0; i < 8; i++) {
+			min = Math.min(min, density[MathUtil.index3D(x + (i >> 2), y + (i >> 1 & 1), z + (i & 1), LENGTH)]);
+		}
+		return min;
+	}
+
+	private static float cheeseThreshold(int y) {
+		return MathUtil.clamp(-y / CHEESE_DENSITY_SPREAD + CHEESE_DENSITY_SURFACE, CHEESE_MIN_DENSITY, CHEESE_MAX_DENSITY);
+	}
+}
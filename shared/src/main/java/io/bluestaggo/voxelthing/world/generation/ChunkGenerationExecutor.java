@@ -0,0 +1,185 @@
+package io.bluestaggo.voxelthing.world.generation;
+
+import io.bluestaggo.voxelthing.util.LongObjectMap;
+import io.bluestaggo.voxelthing.world.Chunk;
+import io.bluestaggo.voxelthing.world.World;
+import io.bluestaggo.voxelthing.world.storage.ChunkStorage;
+
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.PriorityQueue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.ForkJoinWorkerThread;
+import java.util.concurrent.TimeUnit;
+
+public class ChunkGenerationExecutor {
+	public static final int MAX_QUEUED = 1024;
+
+	private final World world;
+	private final ForkJoinPool pool;
+	// Ordered by squared distance to the center chunk; every access holds its lock so re-keying is atomic
+	private final PriorityQueue<Task> queue = new PriorityQueue<>(64, Comparator.comparingInt(t -> t.priority));
+	private final ConcurrentLinkedQueue<Task> finished = new ConcurrentLinkedQueue<>();
+	private final LongObjectMap<Task> pending = new LongObjectMap<>(MAX_QUEUED);
+	private int centerX, centerY, centerZ;
+
+	public ChunkGenerationExecutor(World world) {
+		this(world, Math.max(1, Runtime.getRuntime().availableProcessors() - 1));
+	}
+
+	public ChunkGenerationExecutor(World world, int threads) {
+		this.world = world;
+		pool = new ForkJoinPool(threads, p -> {
+			ForkJoinWorkerThread thread = ForkJoinPool.defaultForkJoinWorkerThreadFactory.newThread(p);
+			thread.setName("Chunk Generator " + thread.getPoolIndex());
+			thread.setDaemon(true);
+			thread.setPriority(Thread.NORM_PRIORITY - 1);
+			return thread;
+		}, null, true);
+	}
+
+	// Queued chunks are generated nearest to the center first; moving it re-sorts whatever is still waiting
+	public void setCenter(int cx, int cy, int cz) {
+		synchronized (queue) {
+			if (cx == centerX && cy == centerY && cz == centerZ) {
+				return;
+			}
+			centerX = cx;
+			centerY = cy;
+			centerZ = cz;
+
+			List<Task> waiting = new ArrayList<>(queue);
+			queue.clear();
+			for (Task task : waiting) {
+				task.priority = distanceSquared(task);
+				queue.add(task);
+			}
+		}
+	}
+
+	private int distanceSquared(Task task) {
+		int dx = task.x - centerX;
+		int dy = task.y - centerY;
+		int dz = task.z - centerZ;
+		return dx * dx + dy * dy + dz * dz;
+	}
+
+	public boolean request(int x, int y, int z) {
+		long key = ChunkStorage.chunkKey(x, y, z);
+		if (pending.containsKey(key)) {
+			return true;
+		}
+		if (pending.size() >= MAX_QUEUED) {
+			return false;
+		}
+
+		Task task = new Task(x, y, z);
+		pending.put(key, task);
+		synchronized (queue) {
+			task.priority = distanceSquared(task);
+			queue.add(task);
+		}
+		pool.execute(this::generateNext);
+		return true;
+	}
+
+	public boolean isPending(int x, int y, int z) {
+		return pending.containsKey(ChunkStorage.chunkKey(x, y, z));
+	}
+
+	public int getPendingCount() {
+		return pending.size();
+	}
+
+	public void cancelOutside(int cx, int cy, int cz, int radius) {
+		List<Task> cancelled = new ArrayList<>();
+		pending.forEachValue(task -> {
+			if (Math.abs(task.x - cx) > radius
+					|| Math.abs(task.y - cy) > radius
+					|| Math.abs(task.z - cz) > radius) {
+				cancelled.add(task);
+			}
+		});
+
+		for (Task task : cancelled) {
+			task.cancelled = true;
+			pending.remove(ChunkStorage.chunkKey(task.x, task.y, task.z));
+		}
+
+		// Their pool jobs stay submitted and simply find the queue shorter
+		if (!cancelled.isEmpty()) {
+			synchronized (queue) {
+				queue.removeIf(task -> task.cancelled);
+			}
+		}
+	}
+
+	// Every pool job takes whichever queued chunk is currently closest, not the one it was submitted for
+	private void generateNext() {
+		Task task;
+		synchronized (queue) {
+			task = queue.poll();
+		}
+		if (task == null || task.cancelled) {
+			return;
+		}
+
+		try {
+			task.chunk = world.loadOrGenerateChunk(task.x, task.y, task.z, task.placements);
+		} catch (Throwable e) {
+			task.error = e;
+		}
+		finished.add(task);
+	}
+
+	public Task pollFinished() {
+		Task task;
+		while ((task = finished.poll()) != null) {
+			long key = ChunkStorage.chunkKey(task.x, task.y, task.z);
+			if (pending.get(key) != task) {
+				continue;
+			}
+
+			pending.remove(key);
+			if (task.error != null) {
+				throw new RuntimeException("Failed to generate chunk at " + task.x + ", " + task.y + ", " + task.z, task.error);
+			}
+			return task;
+		}
+
+		return null;
+	}
+
+	public void shutdown() {
+		synchronized (queue) {
+			queue.clear();
+		}
+		pool.shutdownNow();
+		try {
+			pool.awaitTermination(5, TimeUnit.SECONDS);
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+		}
+	}
+
+	public static class Task {
+		public final int x, y, z;
+		private int priority;
+		public final List<BlockPlacement> placements = new ArrayList<>();
+		private Chunk chunk;
+		private Throwable error;
+		private volatile boolean cancelled;
+
+		private Task(int x, int y, int z) {
+			this.x = x;
+			this.y = y;
+			this.z = z;
+		}
+
+		public Chunk getChunk() {
+			return chunk;
+		}
+	}
+}
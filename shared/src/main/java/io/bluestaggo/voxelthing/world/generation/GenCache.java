@@ -1,34 +1,71 @@
 package io.bluestaggo.voxelthing.world.generation;
 
+import io.bluestaggo.voxelthing.util.LongClockCache;
 import io.bluestaggo.voxelthing.world.World;
-import io.bluestaggo.voxelthing.world.storage.ChunkStorage;
 
+// Bounded cache of per-column generation data, shared by every vertical chunk in the column.
 public class GenCache {
-	public static final int RADIUS_POW2 = ChunkStorage.RADIUS_POW2;
-	public static final int AREA = 1 << RADIUS_POW2 * 2;
-	public static final int POS_MASK = (1 << RADIUS_POW2) - 1;
+	public static final int DEFAULT_CAPACITY = 2048;
 
 	private final World world;
-	private final GenerationInfo[] cache = new GenerationInfo[AREA];
+	private final LongClockCache<GenerationInfo> cache;
 
 	public GenCache(World world) {
+		this(world, DEFAULT_CAPACITY);
+	}
+
+	public GenCache(World world, int capacity) {
 		this.world = world;
+		cache = new LongClockCache<>(capacity);
+	}
+
+	public static long columnKey(int x, int z) {
+		return (long) x << 32 | z & 0xFFFFFFFFL;
+	}
+
+	public static int columnX(long key) {
+		return (int) (key >> 32);
 	}
 
-	public static int cacheCoords(int x, int z) {
-		x &= POS_MASK;
-		z &= POS_MASK;
-		return (x << RADIUS_POW2 | z);
+	public static int columnZ(long key) {
+		return (int) key;
 	}
 
 	public GenerationInfo getGenerationAt(int x, int z) {
-		GenerationInfo entry = cache[cacheCoords(x, z)];
-		if (entry != null && entry.chunkX == x && entry.chunkZ == z) {
-			return entry;
+		long key = columnKey(x, z);
+		GenerationInfo info = cache.get(key);
+		if (info != null) {
+			return info;
 		}
 
-		entry = new GenerationInfo(world.seed, x, z);
-		cache[cacheCoords(x, z)] = entry;
-		return entry;
+		return cache.putIfAbsent(key, new GenerationInfo(world.seed, x, z));
+	}
+
+	public boolean invalidate(int x, int z) {
+		return cache.remove(columnKey(x, z));
+	}
+
+	public void invalidateAll() {
+		cache.clear();
+	}
+
+	public int size() {
+		return cache.size();
+	}
+
+	public int getCapacity() {
+		return cache.getCapacity();
+	}
+
+	public long getHits() {
+		return cache.getHits();
+	}
+
+	public long getMisses() {
+		return cache.getMisses();
+	}
+
+	public void resetStats() {
+		cache.resetStats();
 	}
 }
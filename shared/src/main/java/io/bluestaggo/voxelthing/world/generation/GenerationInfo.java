@@ -4,57 +4,51 @@ import io.bluestaggo.voxelthing.math.MathUtil;
 import io.bluestaggo.voxelthing.math.OpenSimplex2Octaves;
 import io.bluestaggo.voxelthing.world.Chunk;
 
-import java.util.ArrayList;
-import java.util.Arrays;
-
 public class GenerationInfo {
-	private static final int LERP_MAP_LENGTH = (Chunk.LENGTH >> 2) + 1;
-	private static final int LERP_MAP_SIZE = LERP_MAP_LENGTH * LERP_MAP_LENGTH * LERP_MAP_LENGTH;
+	private static final ThreadLocal<NoiseGrids> NOISE_GRIDS = ThreadLocal.withInitial(NoiseGrids::new);
 
 	public final int chunkX, chunkZ;
-	private long randSeed;
 
 	private final long baseSeed;
 	private final long hillSeed;
 	private final long cliffSeed;
 	private final long cliffHeightSeed;
 	private final long caveSeed;
-	private final long biomeSeed;
-	private final long secondBiomeSeed;
 	private final long treeSeed;
+	private final long modSeed;
+	private final long blendSeed;
 
-	public ArrayList<ArrayList<Double>> voronoiSeeds;
-	public ArrayList<ArrayList<Double>> unModVSeeds;
-
-	public int dist = 100;
-	public int gridDist = 50;
+	private static final int TREE_CELL = 4;
+	// Jitter stays short of the cell edge so two trees are always at least a block apart
+	private static final int TREE_JITTER = TREE_CELL - 1;
+	private static final int TREE_CHANCE = 230;
 
 	private final float[] height = new float[Chunk.AREA];
-	private final float[] caveInfo = new float[LERP_MAP_SIZE];
-	private int lastQueryLayer = Integer.MAX_VALUE;
+	private final short[] trees = new short[(Chunk.LENGTH / TREE_CELL) * (Chunk.LENGTH / TREE_CELL)];
+	private int treeCount;
+	private float minHeight;
+	private float maxHeight;
 
 	private boolean hasGenerated;
 
+	// Every seed is derived from the world seed alone, so a column's output never depends on which
+	// thread generates it or what was generated before it
 	public GenerationInfo(long salt, int cx, int cz) {
-		randSeed = salt;
-
-		baseSeed = splitMix();
-		hillSeed = splitMix();
-		cliffSeed = splitMix();
-		cliffHeightSeed = splitMix();
-		caveSeed = splitMix();
-		biomeSeed = splitMix();
-		secondBiomeSeed = splitMix();
-		treeSeed = splitMix();
-
-		voronoiSeedsGen(0, 0);
-		
+		baseSeed = deriveSeed(salt, 1);
+		hillSeed = deriveSeed(salt, 2);
+		cliffSeed = deriveSeed(salt, 3);
+		cliffHeightSeed = deriveSeed(salt, 4);
+		caveSeed = deriveSeed(salt, 5);
+		treeSeed = deriveSeed(salt, 8);
+		modSeed = deriveSeed(salt, 9);
+		blendSeed = deriveSeed(salt, 10);
 
 		chunkX = cx;
 		chunkZ = cz;
 	}
 
-	public void generate(int type) {
+	// Vertically adjacent chunks share one GenerationInfo, so the first of them to get here builds the heightmap
+	public synchronized void generate(int type) {
 		if (hasGenerated) {
 			return;
 		}
@@ -81,20 +75,32 @@ public class GenerationInfo {
 		final float cliffHeightMax = 8.0f;
 
 
-		final long seed = splitMix();
+		final long seed = modSeed;
+
+		NoiseGrids grids = NOISE_GRIDS.get();
+		minHeight = Float.POSITIVE_INFINITY;
+		maxHeight = Float.NEGATIVE_INFINITY;
+		int x0 = chunkX * Chunk.LENGTH;
+		int z0 = chunkZ * Chunk.LENGTH;
+		OpenSimplex2Octaves.noise2Grid(baseSeed, baseOctaves, x0, z0, 1, baseScale, Chunk.LENGTH, Chunk.LENGTH, grids.base);
+		OpenSimplex2Octaves.noise2Grid(hillSeed, hillOctaves, x0, z0, 1, hillScale, Chunk.LENGTH, Chunk.LENGTH, grids.hill);
+		OpenSimplex2Octaves.noise2Grid(cliffSeed, cliffOctaves, x0, z0, 1, cliffScale, Chunk.LENGTH, Chunk.LENGTH, grids.cliff);
+		OpenSimplex2Octaves.noise2Grid(cliffHeightSeed, cliffHeightOctaves, x0, z0, 1, cliffHeightScale,
+				Chunk.LENGTH, Chunk.LENGTH, grids.cliffHeight);
+		if (type == 3) {
+			OpenSimplex2Octaves.noise2Grid(seed, 2, x0, z0, 1, baseScale, Chunk.LENGTH, Chunk.LENGTH, grids.mod);
+		}
 
 		for (int x = 0; x < Chunk.LENGTH; x++) {
 			for (int z = 0; z < Chunk.LENGTH; z++) {
-				int xx = (chunkX * Chunk.LENGTH + x);
-				int zz = (chunkZ * Chunk.LENGTH + z);
+				int i = x + z * Chunk.LENGTH;
 
-				float baseHeight = OpenSimplex2Octaves.noise2(baseSeed, baseOctaves, xx / baseScale, zz / baseScale);
-				float hill = OpenSimplex2Octaves.noise2(hillSeed, hillOctaves, xx / hillScale, zz / hillScale);
+				float baseHeight = grids.base[i];
+				float hill = grids.hill[i];
 				hill = 1.0f - (float) Math.sin(MathUtil.threshold(hill, hillThresholdMin, hillThresholdMax) * MathUtil.PI_F / 2.0f);
 
-				float s = OpenSimplex2Octaves.noise2(seed, 2, xx / baseScale, zz / baseScale);
-
 				if (type == 3) {
+					float s = grids.mod[i];
 					baseHeight = MathUtil.floorMod(baseHeight, s);
 					hill = MathUtil.floorMod(hill, s);
 				}
@@ -104,117 +110,101 @@ public class GenerationInfo {
 				float addedBaseHeight = baseHeightScale * MathUtil.lerp(mod, hillHeightScaleMod, hill);
 				baseHeight = baseHeight * addedBaseHeight + hill * hillHeightScale;
 
-				float cliff = OpenSimplex2Octaves.noise2(cliffSeed, cliffOctaves, xx / cliffScale, zz / cliffScale);
-				float cliffHeight = OpenSimplex2Octaves.noise2(cliffHeightSeed, cliffHeightOctaves, xx / cliffHeightScale, zz / cliffHeightScale);
+				float cliff = grids.cliff[i];
+				float cliffHeight = grids.cliffHeight[i];
 				cliffHeight = MathUtil.lerp(cliffHeightMin, cliffHeightMax, cliffHeight / 2.0f + 0.5f) * (1.0f - hill * 5.0f);
 
 				if (type == 3) {
+					float s = grids.mod[i];
 					cliff = MathUtil.floorMod(cliff, s);
 					cliff = MathUtil.floorMod(cliffHeight, s);
 				}
-				
-				
 
 				if (cliff > cliffThreshold) {
 					baseHeight += cliffHeight;
 				}
 
-				height[x + z * Chunk.LENGTH] = baseHeight;
+				height[i] = baseHeight;
+				// Not Math.min/max: a NaN height from floorMod means a column with no terrain at all,
+				// which never raises the maximum but takes the minimum all the way down
+				if (baseHeight > maxHeight) {
+					maxHeight = baseHeight;
+				}
+				if (!(baseHeight >= minHeight)) {
+					minHeight = Float.isNaN(baseHeight) ? Float.NEGATIVE_INFINITY : baseHeight;
+				}
 			}
-		}      
+		}
+
+		generateTrees();
 	}
 
-	public boolean genTree(int x, int z) {
+	// One candidate per TREE_CELL square, jittered inside it and kept with TREE_CHANCE / 256 odds.
+	// Cells tile the chunk exactly, so a column's candidates never depend on its neighbours.
+	private void generateTrees() {
+		final int cellsPerChunk = Chunk.LENGTH / TREE_CELL;
+
+		treeCount = 0;
+		for (int cx = 0; cx < cellsPerChunk; cx++) {
+			for (int cz = 0; cz < cellsPerChunk; cz++) {
+				long hash = MathUtil.hash(treeSeed, chunkX * cellsPerChunk + cx, 0, chunkZ * cellsPerChunk + cz);
+				if ((hash & 0xFF) >= TREE_CHANCE) {
+					continue;
+				}
 
-		double baseScale = 1;
+				int x = cx * TREE_CELL + (int) ((hash >>> 8 & 0xFFFF) * TREE_JITTER >>> 16);
+				int z = cz * TREE_CELL + (int) ((hash >>> 24 & 0xFFFF) * TREE_JITTER >>> 16);
+				trees[treeCount++] = (short) (x | z << Chunk.SIZE_POW2);
+			}
+		}
+	}
 
-		float baseHeight = OpenSimplex2Octaves.noise2(treeSeed, 5, x / baseScale, z / baseScale);
+	public int getTreeCount() {
+		return treeCount;
+	}
 
-		return baseHeight > 0.5;
+	public int getTreeX(int i) {
+		return trees[i] & Chunk.LENGTH_MASK;
 	}
 
-	public void voronoiSeedsGen(int x,int z) {
-		
-		ArrayList<ArrayList<Double>> seedArray = new ArrayList<ArrayList<Double>>();
-		ArrayList<ArrayList<Double>> array = new ArrayList<ArrayList<Double>>();
-		int distance = dist + x;
-		int distance2  = dist + z;
-		for (int xx = -distance; xx <= distance; xx += gridDist) {
-			for (int zz = -distance2; zz <= distance2; zz += gridDist) {
-				float seedX = xx + (OpenSimplex2Octaves.noise2(biomeSeed, 1, xx, zz) * (gridDist /2));
-				float seedZ = zz + (OpenSimplex2Octaves.noise2(secondBiomeSeed, 1, xx, zz) * (gridDist/2));
-				seedArray.add(new ArrayList<Double>(Arrays.asList((double)seedX,(double)seedZ)));
-				array.add(new ArrayList<Double>(Arrays.asList((double)xx,(double)zz)));
+	public int getTreeZ(int i) {
+		return trees[i] >> Chunk.SIZE_POW2;
+	}
 
-			}
-		}
-		voronoiSeeds = seedArray;
-		unModVSeeds = array;
-		System.out.println(voronoiSeeds);
+	// The same values the old sequential splitMix() draws gave, as a pure function of the draw number
+	// Seeds 6 and 7 belong to BiomePoints
+	static long deriveSeed(long salt, int n) {
+		return MathUtil.mix64(salt + n * 0x9e3779b97f4a7c15L);
 	}
 
-	private long splitMix() {
-		long z = (randSeed += 0x9e3779b97f4a7c15L);
-	    z = (z ^ (z >>> 30)) * 0xbf58476d1ce4e5b9L;
-        z = (z ^ (z >>> 27)) * 0x94d049bb133111ebL;
-		return z ^ z >>> 31;
+	// A coin flip that depends only on the world seed and block position
+	public boolean blend(int x, int y, int z) {
+		return (MathUtil.hash(blendSeed, x, y, z) & 1) == 0;
 	}
 
 	public float getHeight(int x, int z) {
 		return height[x + z * Chunk.LENGTH];
 	}
 
-	public boolean getCave(int x, int y, int z) {
-		if (lastQueryLayer != y >> Chunk.SIZE_POW2) {
-			generateCaves(y >> Chunk.SIZE_POW2);
-		}
-
-		final float cheeseMinDensity = -1.0f;
-		final float cheeseMaxDensity = -0.3f;
-		final float cheeseDensitySpread = 100.0f;
-		final float cheeseDensitySurface = -0.5f;
-
-		int shiftPow2 = Chunk.SIZE_POW2 - 3;
-		int shiftMask = 3;
-		int shiftDiv = 4;
-		int xx = x >> shiftPow2;
-		int yy = (y & Chunk.LENGTH_MASK) >> shiftPow2;
-		int zz = z >> shiftPow2;
-
-		float c000 = caveInfo[MathUtil.index3D(xx, yy, zz, LERP_MAP_LENGTH)];
-		float c001 = caveInfo[MathUtil.index3D(xx, yy, zz + 1, LERP_MAP_LENGTH)];
-		float c010 = caveInfo[MathUtil.index3D(xx, yy + 1, zz, LERP_MAP_LENGTH)];
-		float c011 = caveInfo[MathUtil.index3D(xx, yy + 1, zz + 1, LERP_MAP_LENGTH)];
-		float c100 = caveInfo[MathUtil.index3D(xx + 1, yy, zz, LERP_MAP_LENGTH)];
-		float c101 = caveInfo[MathUtil.index3D(xx + 1, yy, zz + 1, LERP_MAP_LENGTH)];
-		float c110 = caveInfo[MathUtil.index3D(xx + 1, yy + 1, zz, LERP_MAP_LENGTH)];
-		float c111 = caveInfo[MathUtil.index3D(xx + 1, yy + 1, zz + 1, LERP_MAP_LENGTH)];
-		float caveInfo = MathUtil.trilinear(c000, c001, c010, c011, c100, c101, c110, c111,
-					(x & shiftMask) / (float) shiftDiv, (y & shiftMask) / (float) shiftDiv, (z & shiftMask) / (float) shiftDiv);
-		float cheeseThreshold = MathUtil.clamp(-y / cheeseDensitySpread + cheeseDensitySurface, cheeseMinDensity, cheeseMaxDensity);
-		return caveInfo < cheeseThreshold;
+	// The lowest and highest points of the column's heightmap, only valid after generate()
+	public float getMinHeight() {
+		return minHeight;
 	}
 
-	private void generateCaves(int layer) {
-		lastQueryLayer = layer;
-		Arrays.fill(caveInfo, 0);
-
-		final int cheeseOctaves = 4;
-		final double cheeseScaleXZ = 100.0;
-		final double cheeseScaleY = 50.0;
-
+	public float getMaxHeight() {
+		return maxHeight;
+	}
 
-		for (int x = 0; x < LERP_MAP_LENGTH; x++) {
-			for (int y = 0; y < LERP_MAP_LENGTH; y++) {
-				for (int z = 0; z < LERP_MAP_LENGTH; z++) {
-					int xx = (x << (Chunk.SIZE_POW2 - 3)) + (chunkX << Chunk.SIZE_POW2);
-					int yy = (y << (Chunk.SIZE_POW2 - 3)) + (layer << Chunk.SIZE_POW2);
-					int zz = (z << (Chunk.SIZE_POW2 - 3)) + (chunkZ << Chunk.SIZE_POW2);
+	public void fillCaves(CaveVolume volume, int cy) {
+		volume.fill(caveSeed, chunkX, cy, chunkZ);
+	}
 
-					float cheese = OpenSimplex2Octaves.noise3_ImproveXZ(caveSeed, cheeseOctaves, xx / cheeseScaleXZ, yy / cheeseScaleY, zz / cheeseScaleXZ);
-					caveInfo[MathUtil.index3D(x, y, z, LERP_MAP_LENGTH)] = cheese;
-				}
-			}
-		}
+	// Scratch space for the heightmap noise, one set per generating thread
+	private static class NoiseGrids {
+		private final float[] base = new float[Chunk.AREA];
+		private final float[] hill = new float[Chunk.AREA];
+		private final float[] cliff = new float[Chunk.AREA];
+		private final float[] cliffHeight = new float[Chunk.AREA];
+		private final float[] mod = new float[Chunk.AREA];
 	}
 }
@@ -0,0 +1,75 @@
+package io.bluestaggo.voxelthing.world.generation;
+
+import io.bluestaggo.voxelthing.util.LongObjectMap;
+import io.bluestaggo.voxelthing.world.Chunk;
+import io.bluestaggo.voxelthing.world.storage.ChunkStorage;
+
+import java.util.ArrayList;
+import java.util.List;
+
+// Structure blocks that spilled into chunks which have not been generated yet, grouped by the chunk they belong to.
+// Only touched from the thread that adds generated chunks to the world.
+public class PendingPlacements {
+	private final LongObjectMap<List<BlockPlacement>> byChunk = new LongObjectMap<>();
+	private int count;
+
+	public void add(BlockPlacement placement) {
+		long key = ChunkStorage.chunkKey(
+				placement.x >> Chunk.SIZE_POW2,
+				placement.y >> Chunk.SIZE_POW2,
+				placement.z >> Chunk.SIZE_POW2
+		);
+
+		List<BlockPlacement> placements = byChunk.get(key);
+		if (placements == null) {
+			placements = new ArrayList<>();
+			byChunk.put(key, placements);
+		}
+		placements.add(placement);
+		count++;
+	}
+
+	public List<BlockPlacement> take(int cx, int cy, int cz) {
+		List<BlockPlacement> placements = byChunk.remove(ChunkStorage.chunkKey(cx, cy, cz));
+		if (placements != null) {
+			count -= placements.size();
+		}
+		return placements;
+	}
+
+	// Removes and returns the edits for far away chunks. Their source chunks may be loaded from a save rather than
+	// generated again, so a world with a save keeps them there; without one the source chunks do regenerate them.
+	public List<BlockPlacement> removeOutside(int cx, int cy, int cz, int radius) {
+		List<BlockPlacement> outside = new ArrayList<>();
+		byChunk.forEachValue(placements -> {
+			BlockPlacement first = placements.get(0);
+			if (Math.abs((first.x >> Chunk.SIZE_POW2) - cx) > radius
+					|| Math.abs((first.y >> Chunk.SIZE_POW2) - cy) > radius
+					|| Math.abs((first.z >> Chunk.SIZE_POW2) - cz) > radius) {
+				outside.add(first);
+			}
+		});
+
+		List<BlockPlacement> removed = new ArrayList<>();
+		for (BlockPlacement placement : outside) {
+			removed.addAll(take(placement.x >> Chunk.SIZE_POW2, placement.y >> Chunk.SIZE_POW2, placement.z >> Chunk.SIZE_POW2));
+		}
+		return removed;
+	}
+
+	public List<BlockPlacement> takeAll() {
+		List<BlockPlacement> all = new ArrayList<>(count);
+		byChunk.forEachValue(all::addAll);
+		clear();
+		return all;
+	}
+
+	public int size() {
+		return count;
+	}
+
+	public void clear() {
+		byChunk.clear();
+		count = 0;
+	}
+}
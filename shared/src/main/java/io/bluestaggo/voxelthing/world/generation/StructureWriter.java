@@ -0,0 +1,7 @@
+package io.bluestaggo.voxelthing.world.generation;
+
+import io.bluestaggo.voxelthing.world.block.Block;
+
+public interface StructureWriter {
+	void placeBlock(int x, int y, int z, Block block, boolean onlyIntoAir);
+}
@@ -1,12 +1,24 @@
 package io.bluestaggo.voxelthing.world.generation;
 
-import java.lang.reflect.Array;
-import java.util.ArrayList;
+import io.bluestaggo.voxelthing.world.block.Block;
 
+// Multi-block features placed after a chunk's terrain, rooted at a surface block in world coordinates.
+// Blocks may land outside the chunk being generated; the writer decides where those go.
 public enum Structures {
-    Tree1,
-    Tree2
+	Tree1(3),
+	Tree2(5);
 
-}
+	private final int trunkHeight;
 
+	Structures(int trunkHeight) {
+		this.trunkHeight = trunkHeight;
+	}
 
+	public void place(StructureWriter writer, int x, int y, int z) {
+		for (int i = 0; i <= trunkHeight; i++) {
+			writer.placeBlock(x, y + i, z, Block.LOG, false);
+		}
+		// Roots fill a cave opening underneath instead of leaving the trunk floating
+		writer.placeBlock(x, y - 1, z, Block.LOG, true);
+	}
+}
@@ -26,6 +26,11 @@ public class ByteBlockStorage extends BlockStorage {
 		updateBlockCounts();
 	}
 
+	private ByteBlockStorage(ByteBlockStorage storage) {
+		super(storage);
+		blocks = storage.blocks.clone();
+	}
+
 	public ByteBlockStorage(NibbleBlockStorage storage) {
 		super(storage);
 		blocks = new byte[Chunk.VOLUME];
@@ -34,7 +39,7 @@ public class ByteBlockStorage extends BlockStorage {
 
 	@Override
 	protected int getBlockId(int x, int y, int z) {
-		return blocks[MathUtil.index3D(x, y, z, Chunk.LENGTH)];
+		return blocks[MathUtil.index3D(x, y, z, Chunk.LENGTH)] & 0xFF;
 	}
 
 	@Override
@@ -47,6 +52,16 @@ public class ByteBlockStorage extends BlockStorage {
 		return 256;
 	}
 
+	@Override
+	public BlockStorage expand() {
+		return new PackedBlockStorage(this, 9);
+	}
+
+	@Override
+	public BlockStorage copy() {
+		return new ByteBlockStorage(this);
+	}
+
 	@Override
 	public byte[] getBytes() {
 		return blocks;
@@ -1,35 +1,32 @@
 package io.bluestaggo.voxelthing.world.storage;
 
 import io.bluestaggo.pds.StructureItem;
+import io.bluestaggo.voxelthing.util.LongObjectMap;
 import io.bluestaggo.voxelthing.world.Chunk;
 import io.bluestaggo.voxelthing.world.World;
 
+import java.util.ArrayList;
+import java.util.List;
+
 public class ChunkStorage {
-	public static final int RADIUS_POW2 = 5;
-	public static final int VOLUME = 1 << RADIUS_POW2 * 3;
-	public static final int POS_MASK = (1 << RADIUS_POW2) - 1;
+	public static final int COORD_BITS = 21;
+	public static final long COORD_MASK = (1L << COORD_BITS) - 1;
 
 	private final World world;
-	private final Chunk[] chunks = new Chunk[VOLUME];
+	private final LongObjectMap<Chunk> chunks = new LongObjectMap<>(4096);
+	// Loaded chunks changed since they were last saved, so the saver doesn't look through every loaded chunk
+	private final LongObjectMap<Chunk> dirtyChunks = new LongObjectMap<>();
 
 	public ChunkStorage(World world) {
 		this.world = world;
 	}
 
-	public static int storageCoords(int x, int y, int z) {
-		x &= POS_MASK;
-		y &= POS_MASK;
-		z &= POS_MASK;
-		return (x << RADIUS_POW2 | z) << RADIUS_POW2 | y;
+	public static long chunkKey(int x, int y, int z) {
+		return ((x & COORD_MASK) << COORD_BITS | z & COORD_MASK) << COORD_BITS | y & COORD_MASK;
 	}
 
 	public Chunk getChunkAt(int x, int y, int z) {
-		Chunk chunk = chunks[storageCoords(x, y, z)];
-		if (chunk == null || chunk.x != x || chunk.y != y || chunk.z != z) {
-			return null;
-		}
-
-		return chunk;
+		return chunks.get(chunkKey(x, y, z));
 	}
 
 	public Chunk newChunkAt(int x, int y, int z) {
@@ -38,9 +35,8 @@ public class ChunkStorage {
 			return chunk;
 		}
 
-		chunks[storageCoords(x, y, z)] = null;
 		chunk = new Chunk(world, x, y, z);
-		chunks[storageCoords(x, y, z)] = chunk;
+		chunks.put(chunkKey(x, y, z), chunk);
 		return chunk;
 	}
 
@@ -50,9 +46,66 @@ public class ChunkStorage {
 			return chunk;
 		}
 
-		chunks[storageCoords(x, y, z)] = null;
 		chunk = Chunk.deserialize(world, x, y, z, item);
-		chunks[storageCoords(x, y, z)] = chunk;
+		chunks.put(chunkKey(x, y, z), chunk);
 		return chunk;
 	}
+
+	public boolean addChunk(Chunk chunk) {
+		long key = chunkKey(chunk.x, chunk.y, chunk.z);
+		if (chunks.containsKey(key)) {
+			return false;
+		}
+
+		chunks.put(key, chunk);
+		if (chunk.isDirty()) {
+			dirtyChunks.put(key, chunk);
+		}
+		return true;
+	}
+
+	// Call after changing a loaded chunk
+	public void markDirty(Chunk chunk) {
+		long key = chunkKey(chunk.x, chunk.y, chunk.z);
+		if (chunk.isDirty() && chunks.get(key) == chunk) {
+			dirtyChunks.put(key, chunk);
+		}
+	}
+
+	public Chunk unloadChunkAt(int x, int y, int z) {
+		dirtyChunks.remove(chunkKey(x, y, z));
+		return chunks.remove(chunkKey(x, y, z));
+	}
+
+	public List<Chunk> getChunksOutside(int cx, int cy, int cz, int radius) {
+		List<Chunk> outside = new ArrayList<>();
+		chunks.forEachValue(chunk -> {
+			if (Math.abs(chunk.x - cx) > radius
+					|| Math.abs(chunk.y - cy) > radius
+					|| Math.abs(chunk.z - cz) > radius) {
+				outside.add(chunk);
+			}
+		});
+		return outside;
+	}
+
+	// Up to max dirty chunks, which are marked clean again as they are handed to the saver
+	public List<Chunk> takeDirtyChunks(int max) {
+		List<Chunk> dirty = new ArrayList<>();
+		dirtyChunks.forEachValue(chunk -> {
+			if (dirty.size() < max) {
+				dirty.add(chunk);
+			}
+		});
+
+		for (Chunk chunk : dirty) {
+			chunk.clearDirty();
+			dirtyChunks.remove(chunkKey(chunk.x, chunk.y, chunk.z));
+		}
+		return dirty;
+	}
+
+	public int getLoadedCount() {
+		return chunks.size();
+	}
 }
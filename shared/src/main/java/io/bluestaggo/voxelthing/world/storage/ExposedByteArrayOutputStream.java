@@ -0,0 +1,14 @@
+package io.bluestaggo.voxelthing.world.storage;
+
+import java.io.ByteArrayOutputStream;
+
+// Lets the written bytes be handed on without the copy toByteArray() makes
+class ExposedByteArrayOutputStream extends ByteArrayOutputStream {
+	ExposedByteArrayOutputStream() {
+		super(4096);
+	}
+
+	byte[] getBuffer() {
+		return buf;
+	}
+}
@@ -18,11 +18,14 @@ public class NibbleBlockStorage extends BlockStorage {
 		super(palette);
 	}
 
+	private NibbleBlockStorage(NibbleBlockStorage storage) {
+		super(storage);
+		System.arraycopy(storage.blocks, 0, blocks, 0, blocks.length);
+	}
+
 	public NibbleBlockStorage(List<Block> palette, byte[] bytes) {
 		super(palette);
-		for (int i = 0; i < bytes.length; i++) {
-			blocks[i] = (byte) ((bytes[i * 2] & 0xF) << 4 | bytes[i * 2 + 1] & 0xF);
-		}
+		System.arraycopy(bytes, 0, blocks, 0, blocks.length);
 		updateBlockCounts();
 	}
 
@@ -58,6 +61,11 @@ public class NibbleBlockStorage extends BlockStorage {
 		return new ByteBlockStorage(this);
 	}
 
+	@Override
+	public BlockStorage copy() {
+		return new NibbleBlockStorage(this);
+	}
+
 	public void copyBytes(byte[] bytes) {
 		for (int i = 0; i < blocks.length; i++) {
 			bytes[i * 2] = (byte) ((blocks[i] & 0xF0) >> 4);
@@ -0,0 +1,158 @@
+package io.bluestaggo.voxelthing.world.storage;
+
+import io.bluestaggo.voxelthing.math.MathUtil;
+import io.bluestaggo.voxelthing.world.BlockStorage;
+import io.bluestaggo.voxelthing.world.Chunk;
+import io.bluestaggo.voxelthing.world.block.Block;
+
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.List;
+
+// Block IDs packed into longs at any width from 1 to 16 bits. IDs never straddle two longs, so each long holds
+// 64 / bits of them and any leftover high bits go unused. Expanding adds one bit, compacting re-packs at the
+// smallest width that fits the blocks still in use.
+public class PackedBlockStorage extends BlockStorage {
+	public static final int MAX_BITS = 16;
+
+	private final int bits;
+	private final int idsPerLong;
+	private final long mask;
+	private final long[] data;
+
+	public PackedBlockStorage(int bits) {
+		super();
+		this.bits = checkBits(bits);
+		idsPerLong = 64 / bits;
+		mask = (1L << bits) - 1;
+		data = new long[(Chunk.VOLUME + idsPerLong - 1) / idsPerLong];
+	}
+
+	public PackedBlockStorage(List<Block> palette, int bits) {
+		super(palette);
+		this.bits = checkBits(bits);
+		idsPerLong = 64 / bits;
+		mask = (1L << bits) - 1;
+		data = new long[(Chunk.VOLUME + idsPerLong - 1) / idsPerLong];
+	}
+
+	// The first byte holds the width, followed by the longs in big-endian order
+	public PackedBlockStorage(List<Block> palette, byte[] bytes) {
+		this(palette, bytes[0]);
+		ByteBuffer.wrap(bytes, 1, bytes.length - 1).asLongBuffer().get(data);
+		updateBlockCounts();
+	}
+
+	// Takes over the palette of another storage and copies its blocks at the given width
+	public PackedBlockStorage(BlockStorage storage, int bits) {
+		super(storage);
+		this.bits = checkBits(bits);
+		idsPerLong = 64 / bits;
+		mask = (1L << bits) - 1;
+		data = new long[(Chunk.VOLUME + idsPerLong - 1) / idsPerLong];
+		copyIds(storage);
+	}
+
+	private PackedBlockStorage(PackedBlockStorage storage) {
+		super(storage);
+		bits = storage.bits;
+		idsPerLong = storage.idsPerLong;
+		mask = storage.mask;
+		data = storage.data.clone();
+	}
+
+	private static int checkBits(int bits) {
+		if (bits < 1 || bits > MAX_BITS) {
+			throw new IllegalArgumentException("Packed block storage must be 1 to " + MAX_BITS + " bits, not " + bits);
+		}
+		return bits;
+	}
+
+	public static int bitsFor(int paletteSize) {
+		return Math.max(1, 32 - Integer.numberOfLeadingZeros(paletteSize - 1));
+	}
+
+	public int getBits() {
+		return bits;
+	}
+
+	@Override
+	protected int getBlockId(int x, int y, int z) {
+		int i = MathUtil.index3D(x, y, z, Chunk.LENGTH);
+		int l = i / idsPerLong;
+		int shift = (i - l * idsPerLong) * bits;
+		return (int) (data[l] >>> shift & mask);
+	}
+
+	@Override
+	protected void setBlockId(int x, int y, int z, int id) {
+		int i = MathUtil.index3D(x, y, z, Chunk.LENGTH);
+		int l = i / idsPerLong;
+		int shift = (i - l * idsPerLong) * bits;
+		data[l] = data[l] & ~(mask << shift) | (id & mask) << shift;
+	}
+
+	@Override
+	protected int getMaxPaletteSize() {
+		return 1 << bits;
+	}
+
+	@Override
+	public BlockStorage expand() {
+		if (bits >= MAX_BITS) {
+			return super.expand();
+		}
+		return new PackedBlockStorage(this, bits + 1);
+	}
+
+	@Override
+	public BlockStorage compact() {
+		List<Block> newPalette = new ArrayList<>();
+		newPalette.add(null);
+		int[] newIds = new int[palette.size()];
+		int lastUsed = 0;
+		for (int i = 1; i < palette.size(); i++) {
+			if (palette.get(i) != null && getBlockCount(i) > 0) {
+				newIds[i] = newPalette.size();
+				newPalette.add(palette.get(i));
+				lastUsed = i;
+			}
+		}
+
+		if (newPalette.size() == 1) {
+			return new UniformBlockStorage();
+		}
+		if (newPalette.size() == 2 && getBlockCount(lastUsed) == Chunk.VOLUME) {
+			return new UniformBlockStorage(newPalette.get(1));
+		}
+
+		int newBits = bitsFor(newPalette.size());
+		if (newBits == bits && newPalette.size() == palette.size()) {
+			return this;
+		}
+
+		PackedBlockStorage packed = new PackedBlockStorage(newPalette, newBits);
+		for (int x = 0; x < Chunk.LENGTH; x++) {
+			for (int y = 0; y < Chunk.LENGTH; y++) {
+				for (int z = 0; z < Chunk.LENGTH; z++) {
+					packed.setBlockId(x, y, z, newIds[getBlockId(x, y, z)]);
+				}
+			}
+		}
+		packed.updateBlockCounts();
+		return packed;
+	}
+
+	@Override
+	public BlockStorage copy() {
+		return new PackedBlockStorage(this);
+	}
+
+	@Override
+	public byte[] getBytes() {
+		ByteBuffer buffer = ByteBuffer.allocate(1 + data.length * Long.BYTES);
+		buffer.put((byte) bits);
+		buffer.asLongBuffer().put(data);
+		return buffer.array();
+	}
+}
@@ -0,0 +1,247 @@
+package io.bluestaggo.voxelthing.world.storage;
+
+import io.bluestaggo.pds.PdsReader;
+import io.bluestaggo.pds.PdsWriter;
+import io.bluestaggo.pds.StructureItem;
+import io.bluestaggo.voxelthing.Identifier;
+import io.bluestaggo.voxelthing.util.LongObjectMap;
+import io.bluestaggo.voxelthing.world.Chunk;
+import io.bluestaggo.voxelthing.world.block.Block;
+import io.bluestaggo.voxelthing.world.generation.BlockPlacement;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.util.ArrayList;
+import java.util.List;
+
+// Structure blocks waiting on chunks that have never been generated, kept on disk once the world lets go of them.
+// One PDS list of placements per region, laid out like the region files; a region is read the first time one of
+// its chunks asks for placements and written back whenever it has changed. Files are read and written outside
+// the lock, so take() on the main thread never waits on the disk for a region that is already loaded, and
+// loaded regions are kept even once empty, so it doesn't go back to the disk for them either.
+public class PlacementStore {
+	private final Path directory;
+	private final LongObjectMap<Region> regions = new LongObjectMap<>();
+	private boolean closed;
+
+	public PlacementStore(Path directory) throws IOException {
+		this.directory = directory;
+		Files.createDirectories(directory);
+	}
+
+	public static String placementFileName(int rx, int ry, int rz) {
+		return "p." + rx + "." + ry + "." + rz + ".pds";
+	}
+
+	public void add(List<BlockPlacement> placements) throws IOException {
+		for (BlockPlacement placement : placements) {
+			preload(placement.x >> Chunk.SIZE_POW2, placement.y >> Chunk.SIZE_POW2, placement.z >> Chunk.SIZE_POW2);
+		}
+
+		synchronized (this) {
+			for (BlockPlacement placement : placements) {
+				Region region = getRegion(placement.x >> Chunk.SIZE_POW2, placement.y >> Chunk.SIZE_POW2, placement.z >> Chunk.SIZE_POW2);
+				region.add(placement);
+				region.dirty = true;
+			}
+		}
+	}
+
+	// Reads the chunk's region ahead of time, so a later take() on the main thread doesn't touch the disk
+	public void preload(int cx, int cy, int cz) throws IOException {
+		int rx = cx >> RegionFile.SIZE_POW2;
+		int ry = cy >> RegionFile.SIZE_POW2;
+		int rz = cz >> RegionFile.SIZE_POW2;
+		long key = ChunkStorage.chunkKey(rx, ry, rz);
+		synchronized (this) {
+			checkOpen();
+			if (regions.containsKey(key)) {
+				return;
+			}
+		}
+
+		// Loaded regions are never dropped while the store is open, so nothing can have changed the file
+		// since the check above; if another thread loaded the region meanwhile, its copy wins
+		Region region = read(rx, ry, rz);
+		synchronized (this) {
+			checkOpen();
+			if (!regions.containsKey(key)) {
+				regions.put(key, region);
+			}
+		}
+	}
+
+	// Returns null if nothing is waiting on the chunk
+	public List<BlockPlacement> take(int cx, int cy, int cz) throws IOException {
+		preload(cx, cy, cz);
+
+		synchronized (this) {
+			Region region = getRegion(cx, cy, cz);
+			List<BlockPlacement> placements = region.byChunk.remove(ChunkStorage.chunkKey(cx, cy, cz));
+			if (placements != null) {
+				region.dirty = true;
+			}
+			return placements;
+		}
+	}
+
+	// Writes every changed region. The placements are copied out under the lock and written after it,
+	// so only one thread may flush at a time; WorldSave does it on its writer thread.
+	public void flush() throws IOException {
+		List<Region> changed = new ArrayList<>();
+		List<List<BlockPlacement>> contents = new ArrayList<>();
+		synchronized (this) {
+			regions.forEachValue(region -> {
+				if (region.dirty) {
+					List<BlockPlacement> placements = new ArrayList<>();
+					region.byChunk.forEachValue(placements::addAll);
+					changed.add(region);
+					contents.add(placements);
+					region.dirty = false;
+				}
+			});
+		}
+
+		for (int i = 0; i < changed.size(); i++) {
+			Region region = changed.get(i);
+			try {
+				write(region, contents.get(i));
+			} catch (IOException e) {
+				synchronized (this) {
+					for (int j = i; j < changed.size(); j++) {
+						changed.get(j).dirty = true;
+					}
+				}
+				throw e;
+			}
+		}
+	}
+
+	public void close() throws IOException {
+		synchronized (this) {
+			if (closed) {
+				return;
+			}
+		}
+
+		flush();
+		synchronized (this) {
+			closed = true;
+			regions.clear();
+		}
+	}
+
+	private void checkOpen() throws IOException {
+		if (closed) {
+			throw new IOException("Placement store is closed");
+		}
+	}
+
+	// The region must have been loaded with preload()
+	private Region getRegion(int cx, int cy, int cz) throws IOException {
+		checkOpen();
+		return regions.get(ChunkStorage.chunkKey(cx >> RegionFile.SIZE_POW2, cy >> RegionFile.SIZE_POW2, cz >> RegionFile.SIZE_POW2));
+	}
+
+	private Region read(int rx, int ry, int rz) throws IOException {
+		Region region = new Region(rx, ry, rz);
+		Path path = directory.resolve(placementFileName(rx, ry, rz));
+		if (!Files.exists(path)) {
+			return region;
+		}
+
+		List<BlockPlacement> placements = new ArrayList<>();
+		try (InputStream stream = Files.newInputStream(path); PdsReader reader = new PdsReader(stream)) {
+			reader.enterList();
+			while (reader.nextType() != StructureItem.TYPE_END) {
+				placements.add(readPlacement(reader));
+			}
+			reader.exit();
+		}
+
+		for (BlockPlacement placement : placements) {
+			region.add(placement);
+		}
+		return region;
+	}
+
+	// Written next to the old file and moved over it, like the level file
+	private void write(Region region, List<BlockPlacement> placements) throws IOException {
+		Path path = directory.resolve(placementFileName(region.x, region.y, region.z));
+		if (placements.isEmpty()) {
+			Files.deleteIfExists(path);
+			return;
+		}
+
+		Path temp = directory.resolve(path.getFileName() + ".tmp");
+		try (OutputStream stream = Files.newOutputStream(temp); PdsWriter writer = new PdsWriter(stream)) {
+			writer.beginList(placements.size());
+			for (BlockPlacement placement : placements) {
+				writePlacement(writer, placement);
+			}
+			writer.end();
+		}
+		Files.move(temp, path, StandardCopyOption.REPLACE_EXISTING);
+	}
+
+	private static void writePlacement(PdsWriter writer, BlockPlacement placement) throws IOException {
+		writer.beginCompound(5)
+				.name("x").writeInt(placement.x)
+				.name("y").writeInt(placement.y)
+				.name("z").writeInt(placement.z)
+				.name("onlyIntoAir").writeByte(placement.onlyIntoAir ? 1 : 0);
+		writer.name("block");
+		(placement.block == null ? Block.ID_AIR : placement.block.id).write(writer);
+		writer.end();
+	}
+
+	private static BlockPlacement readPlacement(PdsReader reader) throws IOException {
+		int x = 0, y = 0, z = 0;
+		boolean onlyIntoAir = false;
+		Identifier block = null;
+
+		reader.enterCompound();
+		while (reader.nextType() != StructureItem.TYPE_END) {
+			switch (reader.nextName()) {
+				case "x" -> x = reader.readInt();
+				case "y" -> y = reader.readInt();
+				case "z" -> z = reader.readInt();
+				case "onlyIntoAir" -> onlyIntoAir = reader.readByte() != 0;
+				case "block" -> block = Identifier.read(reader);
+				default -> reader.skip();
+			}
+		}
+		reader.exit();
+
+		if (block == null) {
+			throw new IOException("Placement at " + x + ", " + y + ", " + z + " is missing its block");
+		}
+		return new BlockPlacement(x, y, z, Block.fromId(block), onlyIntoAir);
+	}
+
+	private static class Region {
+		private final int x, y, z;
+		private final LongObjectMap<List<BlockPlacement>> byChunk = new LongObjectMap<>();
+		private boolean dirty;
+
+		private Region(int x, int y, int z) {
+			this.x = x;
+			this.y = y;
+			this.z = z;
+		}
+
+		private void add(BlockPlacement placement) {
+			long key = ChunkStorage.chunkKey(placement.x >> Chunk.SIZE_POW2, placement.y >> Chunk.SIZE_POW2, placement.z >> Chunk.SIZE_POW2);
+			List<BlockPlacement> placements = byChunk.get(key);
+			if (placements == null) {
+				placements = new ArrayList<>();
+				byChunk.put(key, placements);
+			}
+			placements.add(placement);
+		}
+	}
+}
@@ -0,0 +1,160 @@
+package io.bluestaggo.voxelthing.world.storage;
+
+import io.bluestaggo.voxelthing.math.MathUtil;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.BitSet;
+
+// Stores the serialized data of an 8x8x8 block of chunks in one file, laid out in 4 KiB sectors.
+// The first sector is a header table with the start sector and byte length of every chunk; each chunk
+// occupies a contiguous run of sectors after it, so one chunk can be read or replaced on its own.
+public class RegionFile implements Closeable {
+	public static final int SIZE_POW2 = 3;
+	public static final int LENGTH = 1 << SIZE_POW2;
+	public static final int LENGTH_MASK = LENGTH - 1;
+	public static final int CHUNK_COUNT = LENGTH * LENGTH * LENGTH;
+
+	public static final int SECTOR_BYTES = 4096;
+	private static final int ENTRY_BYTES = 8;
+	private static final int HEADER_SECTORS = (CHUNK_COUNT * ENTRY_BYTES + SECTOR_BYTES - 1) / SECTOR_BYTES;
+
+	private final FileChannel channel;
+	private final int[] offsets = new int[CHUNK_COUNT];
+	private final int[] lengths = new int[CHUNK_COUNT];
+	private final BitSet usedSectors = new BitSet();
+
+	public RegionFile(Path path) throws IOException {
+		channel = FileChannel.open(path, StandardOpenOption.CREATE, StandardOpenOption.READ, StandardOpenOption.WRITE);
+		usedSectors.set(0, HEADER_SECTORS);
+
+		long size = channel.size();
+		if (size < (long) HEADER_SECTORS * SECTOR_BYTES) {
+			channel.write(ByteBuffer.allocate(HEADER_SECTORS * SECTOR_BYTES), 0);
+			return;
+		}
+
+		ByteBuffer header = ByteBuffer.allocate(CHUNK_COUNT * ENTRY_BYTES);
+		readFully(header, 0);
+		header.flip();
+		for (int i = 0; i < CHUNK_COUNT; i++) {
+			int offset = header.getInt();
+			int length = header.getInt();
+			// Entries pointing into the header or past the end of the file are left over from a failed write
+			if (offset < HEADER_SECTORS || length < 0 || (long) offset * SECTOR_BYTES + length > size) {
+				continue;
+			}
+
+			offsets[i] = offset;
+			lengths[i] = length;
+			usedSectors.set(offset, offset + sectorCount(length));
+		}
+	}
+
+	public static int chunkIndex(int x, int y, int z) {
+		return MathUtil.index3D(x & LENGTH_MASK, y & LENGTH_MASK, z & LENGTH_MASK, LENGTH);
+	}
+
+	private static int sectorCount(int length) {
+		return Math.max(1, (length + SECTOR_BYTES - 1) / SECTOR_BYTES);
+	}
+
+	public synchronized boolean hasChunk(int x, int y, int z) {
+		return offsets[chunkIndex(x, y, z)] != 0;
+	}
+
+	// Takes chunk coordinates, of which only the position within the region is used. Returns null if the chunk was never written.
+	public synchronized byte[] read(int x, int y, int z) throws IOException {
+		int i = chunkIndex(x, y, z);
+		if (offsets[i] == 0) {
+			return null;
+		}
+
+		ByteBuffer buffer = ByteBuffer.allocate(lengths[i]);
+		readFully(buffer, (long) offsets[i] * SECTOR_BYTES);
+		return buffer.array();
+	}
+
+	public synchronized void write(int x, int y, int z, byte[] data, int length) throws IOException {
+		int i = chunkIndex(x, y, z);
+		int oldOffset = offsets[i];
+		int oldSectors = oldOffset != 0 ? sectorCount(lengths[i]) : 0;
+		int sectors = sectorCount(length);
+
+		// Always written to free sectors while the old ones stay reserved, and only then does the header point at
+		// the new copy, so a write that fails or is cut short leaves the old copy intact
+		int offset = allocate(sectors);
+		try {
+			writeFully(ByteBuffer.wrap(data, 0, length), (long) offset * SECTOR_BYTES);
+			writeEntry(i, offset, length);
+		} catch (IOException e) {
+			if (offsets[i] != offset) {
+				usedSectors.clear(offset, offset + sectors);
+			}
+			throw e;
+		}
+
+		if (oldOffset != 0) {
+			usedSectors.clear(oldOffset, oldOffset + oldSectors);
+		}
+	}
+
+	public synchronized void delete(int x, int y, int z) throws IOException {
+		int i = chunkIndex(x, y, z);
+		if (offsets[i] == 0) {
+			return;
+		}
+
+		usedSectors.clear(offsets[i], offsets[i] + sectorCount(lengths[i]));
+		writeEntry(i, 0, 0);
+	}
+
+	// First fit over the freed sectors, falling back to the end of the file
+	private int allocate(int sectors) {
+		int start = usedSectors.nextClearBit(HEADER_SECTORS);
+		while (true) {
+			int end = usedSectors.nextSetBit(start);
+			if (end < 0 || end - start >= sectors) {
+				usedSectors.set(start, start + sectors);
+				return start;
+			}
+			start = usedSectors.nextClearBit(end);
+		}
+	}
+
+	private void writeEntry(int i, int offset, int length) throws IOException {
+		ByteBuffer entry = ByteBuffer.allocate(ENTRY_BYTES);
+		entry.putInt(offset).putInt(length).flip();
+		writeFully(entry, (long) i * ENTRY_BYTES);
+		offsets[i] = offset;
+		lengths[i] = length;
+	}
+
+	private void readFully(ByteBuffer buffer, long position) throws IOException {
+		while (buffer.hasRemaining()) {
+			int read = channel.read(buffer, position + buffer.position());
+			if (read < 0) {
+				throw new IOException("Unexpected end of region file");
+			}
+		}
+	}
+
+	private void writeFully(ByteBuffer buffer, long position) throws IOException {
+		while (buffer.hasRemaining()) {
+			channel.write(buffer, position + buffer.position());
+		}
+	}
+
+	public synchronized void flush() throws IOException {
+		channel.force(false);
+	}
+
+	@Override
+	public synchronized void close() throws IOException {
+		channel.close();
+	}
+}
@@ -0,0 +1,145 @@
+package io.bluestaggo.voxelthing.world.storage;
+
+import io.bluestaggo.pds.PdsReader;
+import io.bluestaggo.pds.StructureItem;
+import io.bluestaggo.voxelthing.util.LongObjectMap;
+
+import java.io.ByteArrayInputStream;
+import java.io.Closeable;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+
+// Reads and writes serialized chunks through the region files in one directory, opening each file on first use.
+// Safe to use from several threads; each region file does its own locking.
+public class RegionStore implements Closeable {
+	private final Path directory;
+	private final LongObjectMap<RegionFile> regions = new LongObjectMap<>();
+	private boolean closed;
+
+	public RegionStore(Path directory) throws IOException {
+		this.directory = directory;
+		Files.createDirectories(directory);
+	}
+
+	public Path getDirectory() {
+		return directory;
+	}
+
+	public static String regionFileName(int rx, int ry, int rz) {
+		return "r." + rx + "." + ry + "." + rz + ".vtr";
+	}
+
+	public StructureItem readChunk(int x, int y, int z) throws IOException {
+		byte[] data = readChunkBytes(x, y, z);
+		if (data == null) {
+			return null;
+		}
+
+		try (DataInputStream stream = new DataInputStream(new ByteArrayInputStream(data))) {
+			return StructureItem.readItem(stream);
+		}
+	}
+
+	// Returns a reader over the chunk's stored bytes, or null if it has never been written
+	public PdsReader openChunk(int x, int y, int z) throws IOException {
+		byte[] data = readChunkBytes(x, y, z);
+		return data != null ? new PdsReader(data) : null;
+	}
+
+	private byte[] readChunkBytes(int x, int y, int z) throws IOException {
+		RegionFile region = getRegion(x, y, z, false);
+		return region != null ? region.read(x, y, z) : null;
+	}
+
+	public void writeChunk(int x, int y, int z, StructureItem item) throws IOException {
+		ExposedByteArrayOutputStream bytes = new ExposedByteArrayOutputStream();
+		try (DataOutputStream stream = new DataOutputStream(bytes)) {
+			StructureItem.writeItem(item, stream);
+		}
+
+		getRegion(x, y, z, true).write(x, y, z, bytes.getBuffer(), bytes.size());
+	}
+
+	// Writes length bytes of already serialized chunk data
+	public void writeChunk(int x, int y, int z, byte[] data, int length) throws IOException {
+		getRegion(x, y, z, true).write(x, y, z, data, length);
+	}
+
+	public boolean hasChunk(int x, int y, int z) throws IOException {
+		RegionFile region = getRegion(x, y, z, false);
+		return region != null && region.hasChunk(x, y, z);
+	}
+
+	public void flush() throws IOException {
+		for (RegionFile region : getOpenRegions()) {
+			region.flush();
+		}
+	}
+
+	@Override
+	public void close() throws IOException {
+		IOException error = null;
+		for (RegionFile region : getOpenRegions()) {
+			try {
+				region.close();
+			} catch (IOException e) {
+				if (error == null) {
+					error = e;
+				} else {
+					error.addSuppressed(e);
+				}
+			}
+		}
+
+		synchronized (regions) {
+			closed = true;
+			regions.clear();
+		}
+
+		if (error != null) {
+			throw error;
+		}
+	}
+
+	private List<RegionFile> getOpenRegions() {
+		List<RegionFile> open = new ArrayList<>();
+		synchronized (regions) {
+			regions.forEachValue(open::add);
+		}
+		return open;
+	}
+
+	// Only creates a missing file when asked to, so reading an unsaved area leaves nothing behind on disk
+	private RegionFile getRegion(int x, int y, int z, boolean create) throws IOException {
+		int rx = x >> RegionFile.SIZE_POW2;
+		int ry = y >> RegionFile.SIZE_POW2;
+		int rz = z >> RegionFile.SIZE_POW2;
+		long key = ChunkStorage.chunkKey(rx, ry, rz);
+
+		synchronized (regions) {
+			// Late readers, such as generation threads still finishing after shutdown, must not reopen files nobody will close
+			if (closed) {
+				throw new IOException("Region store is closed");
+			}
+
+			RegionFile region = regions.get(key);
+			if (region != null) {
+				return region;
+			}
+
+			Path path = directory.resolve(regionFileName(rx, ry, rz));
+			if (!create && !Files.exists(path)) {
+				return null;
+			}
+
+			region = new RegionFile(path);
+			regions.put(key, region);
+			return region;
+		}
+	}
+}
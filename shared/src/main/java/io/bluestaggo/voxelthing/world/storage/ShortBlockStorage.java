@@ -26,20 +26,24 @@ public class ShortBlockStorage extends BlockStorage {
 		updateBlockCounts();
 	}
 
+	private ShortBlockStorage(ShortBlockStorage storage) {
+		super(storage);
+		System.arraycopy(storage.blocks, 0, blocks, 0, blocks.length);
+	}
+
 	public ShortBlockStorage(ByteBlockStorage storage) {
 		super(storage);
-		ByteBuffer buffer = ByteBuffer.wrap(storage.getBytes());
-		buffer.asShortBuffer().get(blocks);
+		copyIds(storage);
 	}
 
 	@Override
 	protected int getBlockId(int x, int y, int z) {
-		return blocks[MathUtil.index3D(x, y, z, Chunk.LENGTH)];
+		return blocks[MathUtil.index3D(x, y, z, Chunk.LENGTH)] & 0xFFFF;
 	}
 
 	@Override
 	protected void setBlockId(int x, int y, int z, int id) {
-		blocks[MathUtil.index3D(x, y, z, Chunk.LENGTH)] = (byte)id;
+		blocks[MathUtil.index3D(x, y, z, Chunk.LENGTH)] = (short)id;
 	}
 
 	@Override
@@ -47,6 +51,11 @@ public class ShortBlockStorage extends BlockStorage {
 		return 65536;
 	}
 
+	@Override
+	public BlockStorage copy() {
+		return new ShortBlockStorage(this);
+	}
+
 	@Override
 	public byte[] getBytes() {
 		ByteBuffer buffer = ByteBuffer.allocate(blocks.length * 2);
@@ -0,0 +1,88 @@
+package io.bluestaggo.voxelthing.world.storage;
+
+import io.bluestaggo.voxelthing.world.BlockStorage;
+import io.bluestaggo.voxelthing.world.Chunk;
+import io.bluestaggo.voxelthing.world.block.Block;
+
+import java.util.List;
+
+// Storage for chunks filled with a single block, usually air. It holds no block array at all and
+// expands into packed storage on the first write of any other block.
+public class UniformBlockStorage extends BlockStorage {
+	private static final byte[] NO_BYTES = new byte[0];
+
+	private final int id;
+
+	public UniformBlockStorage() {
+		super();
+		id = 0;
+	}
+
+	public UniformBlockStorage(Block block) {
+		super();
+		id = block == null ? 0 : addToPalette(block);
+		setBlockCount(id, Chunk.VOLUME);
+	}
+
+	public UniformBlockStorage(List<Block> palette, byte[] bytes) {
+		super(palette);
+		int id = 0;
+		for (int i = palette.size() - 1; i > 0; i--) {
+			if (palette.get(i) != null) {
+				id = i;
+				break;
+			}
+		}
+		this.id = id;
+		setBlockCount(id, Chunk.VOLUME);
+	}
+
+	public int getUniformId() {
+		return id;
+	}
+
+	public Block getUniformBlock() {
+		return palette.get(id);
+	}
+
+	@Override
+	protected int getBlockId(int x, int y, int z) {
+		return id;
+	}
+
+	@Override
+	protected void setBlockId(int x, int y, int z, int id) {
+		throw new IllegalStateException("Uniform block storage must be expanded before changing blocks!");
+	}
+
+	@Override
+	protected int getMaxPaletteSize() {
+		return id + 1;
+	}
+
+	@Override
+	public boolean needsExpansion(Block block) {
+		return block != getUniformBlock();
+	}
+
+	@Override
+	public BlockStorage expand() {
+		return new PackedBlockStorage(this, PackedBlockStorage.bitsFor(palette.size() + 1));
+	}
+
+	// Nothing writes to a uniform storage in place, it is always expanded into a new one first
+	@Override
+	public BlockStorage copy() {
+		return this;
+	}
+
+	@Override
+	public byte[] getBytes() {
+		return NO_BYTES;
+	}
+
+	@Override
+	public boolean isEmpty() {
+		return id == 0;
+	}
+}
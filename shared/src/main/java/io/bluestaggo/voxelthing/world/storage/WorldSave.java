@@ -0,0 +1,282 @@
+package io.bluestaggo.voxelthing.world.storage;
+
+import io.bluestaggo.pds.CompoundItem;
+import io.bluestaggo.pds.PdsReader;
+import io.bluestaggo.pds.PdsWriter;
+import io.bluestaggo.pds.StructureItem;
+import io.bluestaggo.voxelthing.util.LongObjectMap;
+import io.bluestaggo.voxelthing.world.Chunk;
+import io.bluestaggo.voxelthing.world.World;
+import io.bluestaggo.voxelthing.world.generation.BlockPlacement;
+
+import java.io.Closeable;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.LinkedBlockingQueue;
+
+// A world's save directory: the level file, region files and structure placements, written by a background thread.
+// Chunks handed to saveChunk must not change afterwards, so callers pass unloaded chunks or snapshots.
+// Until a chunk has been written, loading it returns a copy of the queued one instead of the older copy on disk.
+public class WorldSave implements Closeable {
+	public static final String LEVEL_FILE = "level.pds";
+	// Markers on the write queue alongside chunk keys, which never have the top bit set
+	private static final long STOP = -1L;
+	private static final long STORE_PLACEMENTS = -2L;
+	private static final long FLUSH_PLACEMENTS = -3L;
+
+	private final Path directory;
+	private final RegionStore regions;
+	private final PlacementStore placements;
+
+	// Newest unwritten copy of each chunk; a key is queued once however many times its chunk is replaced
+	private final LongObjectMap<Chunk> queued = new LongObjectMap<>();
+	private final LinkedBlockingQueue<Long> writeQueue = new LinkedBlockingQueue<>();
+	// Structure placements handed over by savePlacements, until the writer thread puts them in the store
+	private final List<BlockPlacement> placementsToStore = new ArrayList<>();
+	private final Thread writer;
+	// Only touched by the writer thread, and reused so saving a chunk doesn't allocate a fresh buffer each time
+	private final ExposedByteArrayOutputStream writeBuffer = new ExposedByteArrayOutputStream();
+	private volatile boolean closed;
+
+	public WorldSave(Path directory) throws IOException {
+		this.directory = directory;
+		regions = new RegionStore(directory.resolve("regions"));
+		placements = new PlacementStore(directory.resolve("placements"));
+
+		writer = new Thread(this::writeQueued, "Chunk Saver");
+		writer.setDaemon(true);
+		writer.setPriority(Thread.NORM_PRIORITY - 1);
+		writer.start();
+	}
+
+	public static boolean exists(Path directory) {
+		return Files.isRegularFile(directory.resolve(LEVEL_FILE));
+	}
+
+	public Path getDirectory() {
+		return directory;
+	}
+
+	public CompoundItem readLevel() throws IOException {
+		try (InputStream stream = Files.newInputStream(directory.resolve(LEVEL_FILE))) {
+			StructureItem item = StructureItem.readItem(new DataInputStream(stream));
+			if (!(item instanceof CompoundItem level)) {
+				throw new IOException("Level file in \"" + directory + "\" is corrupt");
+			}
+			return level;
+		}
+	}
+
+	// Written next to the old file and moved over it, so a crash can't leave a half-written level behind
+	public void writeLevel(CompoundItem level) throws IOException {
+		Path path = directory.resolve(LEVEL_FILE);
+		Path temp = directory.resolve(LEVEL_FILE + ".tmp");
+		try (OutputStream stream = Files.newOutputStream(temp)) {
+			DataOutputStream dataStream = new DataOutputStream(stream);
+			StructureItem.writeItem(level, dataStream);
+			dataStream.flush();
+		}
+		Files.move(temp, path, StandardCopyOption.REPLACE_EXISTING);
+	}
+
+	// Returns null if the chunk has never been saved
+	public Chunk loadChunk(World world, int x, int y, int z) throws IOException {
+		Chunk pending;
+		synchronized (queued) {
+			pending = queued.get(ChunkStorage.chunkKey(x, y, z));
+		}
+		if (pending != null) {
+			return pending.snapshot();
+		}
+
+		try (PdsReader reader = regions.openChunk(x, y, z)) {
+			return reader != null ? Chunk.read(world, x, y, z, reader) : null;
+		}
+	}
+
+	// Structure blocks for chunks that have not been generated yet, kept until those chunks are added to the world.
+	// They are stored on the writer thread, which may have to read placement files first.
+	public void savePlacements(List<BlockPlacement> pending) {
+		if (closed) {
+			throw new IllegalStateException("World save is closed");
+		}
+
+		synchronized (placementsToStore) {
+			placementsToStore.addAll(pending);
+		}
+		writeQueue.add(STORE_PLACEMENTS);
+	}
+
+	// Call on the thread loading the chunk, before takePlacements on the main thread
+	public void preloadPlacements(int x, int y, int z) throws IOException {
+		placements.preload(x, y, z);
+	}
+
+	// Returns null if no saved structure blocks are waiting on the chunk
+	public List<BlockPlacement> takePlacements(int x, int y, int z) throws IOException {
+		// The handover list is checked under the same lock the writer holds while moving it into the store,
+		// so a placement is always found in one or the other
+		synchronized (placementsToStore) {
+			List<BlockPlacement> taken = placements.take(x, y, z);
+			for (int i = placementsToStore.size() - 1; i >= 0; i--) {
+				BlockPlacement placement = placementsToStore.get(i);
+				if (placement.x >> Chunk.SIZE_POW2 == x && placement.y >> Chunk.SIZE_POW2 == y && placement.z >> Chunk.SIZE_POW2 == z) {
+					if (taken == null) {
+						taken = new ArrayList<>();
+					}
+					taken.add(placement);
+					placementsToStore.remove(i);
+				}
+			}
+			return taken;
+		}
+	}
+
+	// Writes the changed placement files on the writer thread
+	public void flushPlacements() {
+		if (!closed) {
+			writeQueue.add(FLUSH_PLACEMENTS);
+		}
+	}
+
+	public void saveChunk(Chunk chunk) {
+		if (closed) {
+			throw new IllegalStateException("World save is closed");
+		}
+
+		long key = ChunkStorage.chunkKey(chunk.x, chunk.y, chunk.z);
+		synchronized (queued) {
+			if (queued.put(key, chunk) == null) {
+				writeQueue.add(key);
+			}
+		}
+	}
+
+	public int getQueuedCount() {
+		synchronized (queued) {
+			return queued.size();
+		}
+	}
+
+	private void writeQueued() {
+		List<Long> batch = new ArrayList<>();
+		try {
+			while (true) {
+				batch.add(writeQueue.take());
+				writeQueue.drainTo(batch, 63);
+
+				boolean stop = false;
+				for (long key : batch) {
+					if (key == STOP) {
+						stop = true;
+					} else if (key == STORE_PLACEMENTS) {
+						storePlacements();
+					} else if (key == FLUSH_PLACEMENTS) {
+						flushPlacementFiles();
+					} else {
+						write(key);
+					}
+				}
+				batch.clear();
+
+				if (stop) {
+					if (writeQueue.isEmpty()) {
+						break;
+					}
+					// A chunk that was replaced mid-write went back on the queue after the stop marker
+					writeQueue.add(STOP);
+				}
+			}
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+		}
+	}
+
+	private void storePlacements() {
+		List<BlockPlacement> handed;
+		synchronized (placementsToStore) {
+			handed = new ArrayList<>(placementsToStore);
+		}
+
+		try {
+			// Reads whatever placement files are needed first, so the store is only updated in memory below
+			for (BlockPlacement placement : handed) {
+				placements.preload(placement.x >> Chunk.SIZE_POW2, placement.y >> Chunk.SIZE_POW2, placement.z >> Chunk.SIZE_POW2);
+			}
+			synchronized (placementsToStore) {
+				placements.add(placementsToStore);
+				placementsToStore.clear();
+			}
+		} catch (IOException e) {
+			System.err.println("Failed to save structure placements");
+			e.printStackTrace();
+		}
+	}
+
+	private void flushPlacementFiles() {
+		try {
+			placements.flush();
+		} catch (IOException e) {
+			System.err.println("Failed to save structure placements");
+			e.printStackTrace();
+		}
+	}
+
+	private void write(long key) {
+		Chunk chunk;
+		synchronized (queued) {
+			chunk = queued.get(key);
+		}
+
+		try {
+			writeBuffer.reset();
+			PdsWriter pdsWriter = new PdsWriter(writeBuffer);
+			chunk.write(pdsWriter);
+			pdsWriter.flush();
+			regions.writeChunk(chunk.x, chunk.y, chunk.z, writeBuffer.getBuffer(), writeBuffer.size());
+		} catch (IOException e) {
+			System.err.println("Failed to save chunk at " + chunk.x + ", " + chunk.y + ", " + chunk.z);
+			e.printStackTrace();
+		}
+
+		// Only forget the chunk once it is on disk, so loadChunk never reads a stale copy in between
+		synchronized (queued) {
+			if (queued.get(key) == chunk) {
+				queued.remove(key);
+			} else {
+				writeQueue.add(key);
+			}
+		}
+	}
+
+	// Blocks until every queued chunk has been written
+	@Override
+	public void close() throws IOException {
+		if (closed) {
+			return;
+		}
+		closed = true;
+
+		writeQueue.add(STOP);
+		try {
+			writer.join();
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+		}
+
+		try {
+			placements.close();
+		} finally {
+			regions.flush();
+			regions.close();
+		}
+	}
+}
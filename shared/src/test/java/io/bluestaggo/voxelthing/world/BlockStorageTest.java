@@ -0,0 +1,77 @@
+package io.bluestaggo.voxelthing.world;
+
+import io.bluestaggo.voxelthing.world.block.Block;
+import io.bluestaggo.voxelthing.world.storage.ByteBlockStorage;
+import org.junit.jupiter.api.Test;
+
+import java.io.ByteArrayOutputStream;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+import java.util.zip.DeflaterOutputStream;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+class BlockStorageTest {
+	private static final Block[] BLOCKS = {null, Block.STONE, Block.DIRT, Block.GRASS, Block.BRICKS};
+
+	@Test
+	void compressedBlocksRoundTrip() {
+		BlockStorage storage = new ByteBlockStorage();
+		Random random = new Random(3);
+		for (int x = 0; x < Chunk.LENGTH; x++) {
+			for (int y = 0; y < Chunk.LENGTH; y++) {
+				for (int z = 0; z < Chunk.LENGTH; z++) {
+					storage.setBlock(x, y, z, y < 12 ? Block.STONE : BLOCKS[random.nextInt(BLOCKS.length)]);
+				}
+			}
+		}
+
+		BlockStorage decoded = BlockStorage.decode(BlockStorage.COMPRESSED_TYPE,
+				new ArrayList<>(storage.palette), storage.getCompressedBytes());
+		for (int x = 0; x < Chunk.LENGTH; x++) {
+			for (int y = 0; y < Chunk.LENGTH; y++) {
+				for (int z = 0; z < Chunk.LENGTH; z++) {
+					assertEquals(storage.getBlock(x, y, z), decoded.getBlock(x, y, z));
+				}
+			}
+		}
+	}
+
+	@Test
+	void negativePaletteIdIsRejected() {
+		// A single run over the whole chunk whose five-byte varint ID decodes to -1
+		byte[] runs = {(byte) 0x80, (byte) 0x80, 0x02, (byte) 0xFF, (byte) 0xFF, (byte) 0xFF, (byte) 0xFF, 0x0F};
+		assertCorrupt(runs);
+	}
+
+	@Test
+	void emptyRunIsRejected() {
+		assertCorrupt(new byte[]{0x00, 0x00, (byte) 0x80, (byte) 0x80, 0x02, 0x00});
+	}
+
+	@Test
+	void oversizedVarIntIsRejected() {
+		assertCorrupt(new byte[]{(byte) 0x80, (byte) 0x80, 0x02, (byte) 0x80, (byte) 0x80, (byte) 0x80, (byte) 0x80, 0x10});
+	}
+
+	@Test
+	void oversizedRunStreamIsRejected() {
+		assertCorrupt(new byte[Chunk.VOLUME * 8]);
+	}
+
+	private static void assertCorrupt(byte[] runs) {
+		List<Block> palette = new ArrayList<>(List.of(Block.STONE));
+		assertThrows(IllegalArgumentException.class,
+				() -> BlockStorage.decode(BlockStorage.COMPRESSED_TYPE, palette, deflate(runs)));
+	}
+
+	private static byte[] deflate(byte[] bytes) throws Exception {
+		ByteArrayOutputStream out = new ByteArrayOutputStream();
+		try (DeflaterOutputStream stream = new DeflaterOutputStream(out)) {
+			stream.write(bytes);
+		}
+		return out.toByteArray();
+	}
+}
@@ -0,0 +1,64 @@
+package io.bluestaggo.voxelthing.world;
+
+import io.bluestaggo.voxelthing.world.block.Block;
+import org.junit.jupiter.api.Test;
+
+import java.util.Random;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+class ChunkTest {
+	private static final Block[] BLOCKS = {null, Block.STONE, Block.DIRT, Block.GRASS, Block.SAND, Block.BRICKS};
+
+	// Snapshots share their storage with the chunk until one of them writes, which must not show in the other
+	@Test
+	void snapshotsAreUnaffectedByLaterWrites() {
+		Random random = new Random(5);
+		for (int kinds = 1; kinds <= BLOCKS.length; kinds++) {
+			Chunk chunk = new Chunk(null, 0, 0, 0);
+			chunk.fillBox(0, 0, 0, Chunk.LENGTH, Chunk.LENGTH, Chunk.LENGTH, Block.STONE);
+			for (int i = 0; i < 2000; i++) {
+				chunk.setBlock(random.nextInt(Chunk.LENGTH), random.nextInt(Chunk.LENGTH), random.nextInt(Chunk.LENGTH),
+						BLOCKS[random.nextInt(kinds)]);
+			}
+
+			Block[] before = blocksOf(chunk);
+			Chunk snapshot = chunk.snapshot();
+			Chunk second = chunk.snapshot();
+
+			chunk.setBlock(10, 20, 30, Block.LOG);
+			chunk.fillBox(0, 0, 0, 8, 8, 8, Block.WATER);
+			snapshot.setBlock(4, 5, 6, Block.SNOW);
+
+			assertEquals(Block.SNOW, snapshot.getBlock(4, 5, 6));
+			assertEquals(Block.LOG, chunk.getBlock(10, 20, 30));
+			assertEquals(Block.WATER, chunk.getBlock(7, 7, 7));
+			for (int x = 0; x < Chunk.LENGTH; x++) {
+				for (int y = 0; y < Chunk.LENGTH; y++) {
+					for (int z = 0; z < Chunk.LENGTH; z++) {
+						assertEquals(before[index(x, y, z)], second.getBlock(x, y, z));
+						if (x != 4 || y != 5 || z != 6) {
+							assertEquals(before[index(x, y, z)], snapshot.getBlock(x, y, z));
+						}
+					}
+				}
+			}
+		}
+	}
+
+	private static Block[] blocksOf(Chunk chunk) {
+		Block[] blocks = new Block[Chunk.VOLUME];
+		for (int x = 0; x < Chunk.LENGTH; x++) {
+			for (int y = 0; y < Chunk.LENGTH; y++) {
+				for (int z = 0; z < Chunk.LENGTH; z++) {
+					blocks[index(x, y, z)] = chunk.getBlock(x, y, z);
+				}
+			}
+		}
+		return blocks;
+	}
+
+	private static int index(int x, int y, int z) {
+		return (x * Chunk.LENGTH + y) * Chunk.LENGTH + z;
+	}
+}
@@ -0,0 +1,91 @@
+package io.bluestaggo.voxelthing.world;
+
+import io.bluestaggo.voxelthing.world.block.Block;
+import io.bluestaggo.voxelthing.world.generation.BlockPlacement;
+import org.junit.jupiter.params.ParameterizedTest;
+import org.junit.jupiter.params.provider.ValueSource;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.ForkJoinPool;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+
+// Chunks must come out the same whichever thread generates them and in whatever order
+class GenerationDeterminismTest {
+	private static final long SEED = 1234L;
+	private static final int RADIUS_XZ = 4;
+	private static final int RADIUS_Y = 2;
+	private static final int SIDE_XZ = RADIUS_XZ * 2;
+	private static final int SIDE_Y = RADIUS_Y * 2;
+
+	@ParameterizedTest
+	@ValueSource(ints = {1, 2, 3})
+	void parallelGenerationMatchesSingleThreaded(int worldType) throws Exception {
+		List<int[]> positions = new ArrayList<>();
+		for (int x = -RADIUS_XZ; x < RADIUS_XZ; x++) {
+			for (int y = -RADIUS_Y; y < RADIUS_Y; y++) {
+				for (int z = -RADIUS_XZ; z < RADIUS_XZ; z++) {
+					positions.add(new int[]{x, y, z});
+				}
+			}
+		}
+
+		long[] expected = new long[positions.size()];
+		World single = new World(worldType, SEED);
+		try {
+			for (int[] pos : positions) {
+				expected[index(pos)] = generateHash(single, pos);
+			}
+		} finally {
+			single.close();
+		}
+
+		long[] actual = new long[positions.size()];
+		World parallel = new World(worldType, SEED);
+		ForkJoinPool pool = new ForkJoinPool(16);
+		try {
+			Collections.shuffle(positions, new Random(5));
+			pool.submit(() -> positions.parallelStream().forEach(pos -> actual[index(pos)] = generateHash(parallel, pos))).get();
+		} finally {
+			pool.shutdown();
+			parallel.close();
+		}
+
+		assertArrayEquals(expected, actual);
+	}
+
+	private static int index(int[] pos) {
+		return ((pos[0] + RADIUS_XZ) * SIDE_Y + pos[1] + RADIUS_Y) * SIDE_XZ + pos[2] + RADIUS_XZ;
+	}
+
+	// Covers the chunk's blocks and the structure blocks it hands on to its neighbours
+	private static long generateHash(World world, int[] pos) {
+		List<BlockPlacement> placements = new ArrayList<>();
+		Chunk chunk = world.generateChunk(pos[0], pos[1], pos[2], placements);
+
+		long hash = 1;
+		for (int x = 0; x < Chunk.LENGTH; x++) {
+			for (int y = 0; y < Chunk.LENGTH; y++) {
+				for (int z = 0; z < Chunk.LENGTH; z++) {
+					hash = hash * 31 + blockHash(chunk.getBlock(x, y, z));
+				}
+			}
+		}
+
+		for (BlockPlacement placement : placements) {
+			hash = hash * 31 + placement.x;
+			hash = hash * 31 + placement.y;
+			hash = hash * 31 + placement.z;
+			hash = hash * 31 + blockHash(placement.block);
+			hash = hash * 31 + (placement.onlyIntoAir ? 1 : 0);
+		}
+		return hash;
+	}
+
+	private static int blockHash(Block block) {
+		return block == null ? 0 : block.id.toString().hashCode();
+	}
+}
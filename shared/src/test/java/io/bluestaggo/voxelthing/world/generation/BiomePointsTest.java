@@ -0,0 +1,51 @@
+package io.bluestaggo.voxelthing.world.generation;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.Random;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class BiomePointsTest {
+	@Test
+	void nearestCellMatchesBruteForce() {
+		// A small cache so regions are evicted and regenerated along the way
+		BiomePoints points = new BiomePoints(7L, 4);
+		Random random = new Random(1);
+
+		for (int i = 0; i < 50000; i++) {
+			double x = (random.nextDouble() - 0.5) * 20000.0;
+			double z = (random.nextDouble() - 0.5) * 20000.0;
+			// Half the queries sit on a cell edge, where a point two cells over can be the nearest
+			if (i % 2 == 0) {
+				x = Math.round(x / BiomePoints.CELL_SIZE) * BiomePoints.CELL_SIZE + BiomePoints.CELL_SIZE / 2.0;
+			}
+
+			assertEquals(bruteForceNearest(points, x, z), points.getNearestCell(x, z));
+		}
+
+		assertTrue(points.size() <= 4);
+	}
+
+	private static long bruteForceNearest(BiomePoints points, double x, double z) {
+		int centerX = (int) Math.round(x / BiomePoints.CELL_SIZE);
+		int centerZ = (int) Math.round(z / BiomePoints.CELL_SIZE);
+		long nearest = 0;
+		double nearestDist = Double.POSITIVE_INFINITY;
+
+		for (int cellX = centerX - 4; cellX <= centerX + 4; cellX++) {
+			for (int cellZ = centerZ - 4; cellZ <= centerZ + 4; cellZ++) {
+				double dx = points.getPointX(cellX, cellZ) - x;
+				double dz = points.getPointZ(cellX, cellZ) - z;
+				double dist = dx * dx + dz * dz;
+				if (dist < nearestDist) {
+					nearestDist = dist;
+					nearest = GenCache.columnKey(cellX, cellZ);
+				}
+			}
+		}
+
+		return nearest;
+	}
+}
@@ -0,0 +1,121 @@
+package io.bluestaggo.voxelthing.world.storage;
+
+import io.bluestaggo.voxelthing.world.Chunk;
+import io.bluestaggo.voxelthing.world.World;
+import io.bluestaggo.voxelthing.world.block.Block;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Comparator;
+import java.util.stream.Stream;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+class WorldSaveTest {
+	private static final long SEED = 42L;
+	private static final int TYPE = 2;
+
+	private Path directory;
+
+	@BeforeEach
+	void createDirectory() throws IOException {
+		directory = Files.createTempDirectory("voxelthing-save");
+	}
+
+	@AfterEach
+	void deleteDirectory() throws IOException {
+		try (Stream<Path> paths = Files.walk(directory)) {
+			for (Path path : paths.sorted(Comparator.reverseOrder()).toList()) {
+				Files.delete(path);
+			}
+		}
+	}
+
+	@Test
+	void editsSurviveReopening() throws IOException {
+		World world = new World(TYPE, SEED, new WorldSave(directory));
+		loadArea(world, -1, 1);
+		world.setBlock(3, 5, 7, Block.BRICKS);
+		world.setBlock(-20, -10, 30, null);
+		world.close();
+
+		World reopened = new World(TYPE, SEED, new WorldSave(directory));
+		loadArea(reopened, -1, 1);
+		assertEquals(Block.BRICKS, reopened.getBlock(3, 5, 7));
+		assertEquals(null, reopened.getBlock(-20, -10, 30));
+		reopened.close();
+	}
+
+	// Trees that cross into chunks generated only after a reload must still be whole
+	@Test
+	void pendingStructuresSurviveReopening() throws IOException {
+		World world = new World(TYPE, SEED, new WorldSave(directory));
+		editArea(world);
+		world.close();
+
+		assertEquals(0, differencesAfterReopening());
+	}
+
+	// Same again, with the structure blocks saved when the player moves away rather than when the world closes
+	@Test
+	void distantStructuresSurviveReopening() throws IOException {
+		World world = new World(TYPE, SEED, new WorldSave(directory));
+		editArea(world);
+		world.unloadDistantChunks(100, 0, 100, 1);
+		world.close();
+
+		assertEquals(0, differencesAfterReopening());
+	}
+
+	// Every chunk is edited so that all of them come back from the save instead of being generated again
+	private static void editArea(World world) {
+		for (int x = -2; x < 2; x++) {
+			for (int y = -1; y < 1; y++) {
+				for (int z = -2; z < 2; z++) {
+					world.loadChunkAt(x, y, z);
+					int bx = x * Chunk.LENGTH;
+					int by = y * Chunk.LENGTH;
+					int bz = z * Chunk.LENGTH;
+					world.setBlock(bx, by, bz, world.getBlock(bx, by, bz) == null ? Block.BRICKS : null);
+				}
+			}
+		}
+	}
+
+	private int differencesAfterReopening() throws IOException {
+		World reopened = new World(TYPE, SEED, new WorldSave(directory));
+		World reference = new World(TYPE, SEED);
+		loadArea(reopened, -3, 2);
+		loadArea(reference, -3, 2);
+
+		int differences = 0;
+		for (int x = -3 * Chunk.LENGTH; x < 3 * Chunk.LENGTH; x++) {
+			for (int y = -2 * Chunk.LENGTH; y < 2 * Chunk.LENGTH; y++) {
+				for (int z = -3 * Chunk.LENGTH; z < 3 * Chunk.LENGTH; z++) {
+					boolean edited = (x & Chunk.LENGTH_MASK) == 0 && (y & Chunk.LENGTH_MASK) == 0 && (z & Chunk.LENGTH_MASK) == 0;
+					if (!edited && reopened.getBlock(x, y, z) != reference.getBlock(x, y, z)) {
+						differences++;
+					}
+				}
+			}
+		}
+
+		reopened.close();
+		reference.close();
+		return differences;
+	}
+
+	private static void loadArea(World world, int min, int max) {
+		for (int x = min; x <= max; x++) {
+			for (int y = -2; y < 2; y++) {
+				for (int z = min; z <= max; z++) {
+					world.loadChunkAt(x, y, z);
+				}
+			}
+		}
+	}
+}